@@ -0,0 +1,78 @@
+package com.yls.activiti7demo.benchmark;
+
+import com.yls.activiti7demo.Activiti7DemoApplication;
+import org.activiti.bpmn.converter.BpmnXMLConverter;
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.repository.Deployment;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * 基准测试公共方法：以h2 profile启动与应用相同的Spring和Activiti配置，读取测试流程
+ */
+final class BenchmarkSupport {
+
+    static final String PROCESS_RESOURCE = "business-trip.bpmn20.xml";
+    static final String PROCESS_KEY = "businessTrip";
+    static final String SVG_RESOURCE = "business-trip.svg";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 不启动Web容器，关闭指标刷新，日志只输出WARN以上
+     */
+    static ConfigurableApplicationContext startContext() {
+        return new SpringApplicationBuilder(Activiti7DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("h2")
+                .properties("logging.level.root=WARN",
+                        "activiti-demo.metrics.gauge-refresh-millis=3600000")
+                .run();
+    }
+
+    static byte[] readResource(String name) {
+        try (InputStream in = BenchmarkSupport.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException(name + " not found");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static BpmnModel readBpmnModel() {
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance()
+                    .createXMLStreamReader(new ByteArrayInputStream(readResource(PROCESS_RESOURCE)), "UTF-8");
+            return new BpmnXMLConverter().convertToBpmnModel(reader);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 部署测试流程，返回流程定义ID
+     */
+    static String deployBusinessTrip(RepositoryService repositoryService) {
+        Deployment deployment = repositoryService.createDeployment()
+                .name("出差申请")
+                .addBytes(PROCESS_RESOURCE, readResource(PROCESS_RESOURCE))
+                .deploy();
+        return repositoryService.createProcessDefinitionQuery()
+                .deploymentId(deployment.getId())
+                .singleResult()
+                .getId();
+    }
+}
@@ -0,0 +1,53 @@
+package com.yls.activiti7demo.benchmark;
+
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.repository.Deployment;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流程部署：每次都生成新版本的部署，以及开启重复过滤时内容未变化的部署
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DeploymentBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private RepositoryService repositoryService;
+    private byte[] bpmn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.startContext();
+        repositoryService = context.getBean(RepositoryService.class);
+        bpmn = BenchmarkSupport.readResource(BenchmarkSupport.PROCESS_RESOURCE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Deployment deploy() {
+        return repositoryService.createDeployment()
+                .name("出差申请")
+                .addBytes(BenchmarkSupport.PROCESS_RESOURCE, bpmn)
+                .deploy();
+    }
+
+    @Benchmark
+    public Deployment deployUnchangedWithDuplicateFiltering() {
+        return repositoryService.createDeployment()
+                .name("出差申请-重复过滤")
+                .addBytes(BenchmarkSupport.PROCESS_RESOURCE, bpmn)
+                .enableDuplicateFiltering()
+                .deploy();
+    }
+}
@@ -0,0 +1,50 @@
+package com.yls.activiti7demo.benchmark;
+
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.image.ProcessDiagramGenerator;
+import org.activiti.image.impl.DefaultProcessDiagramGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流程图生成，调用方式与ModelerController缓存未命中时相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DiagramBenchmark {
+
+    private final ProcessDiagramGenerator diagramGenerator = new DefaultProcessDiagramGenerator();
+    private final List<String> executedActivityIds = Arrays.asList("start", "fillForm", "groupLeaderApproval");
+    private BpmnModel bpmnModel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bpmnModel = BenchmarkSupport.readBpmnModel();
+    }
+
+    @Benchmark
+    public byte[] definitionDiagram() throws IOException {
+        return render(Collections.emptyList());
+    }
+
+    @Benchmark
+    public byte[] instanceDiagramWithHighlights() throws IOException {
+        return render(executedActivityIds);
+    }
+
+    private byte[] render(List<String> highLightedActivities) throws IOException {
+        try (InputStream imageStream = diagramGenerator.generateDiagram(bpmnModel, Collections.singletonList("png"), highLightedActivities)) {
+            return imageStream.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.yls.activiti7demo.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.activiti.bpmn.converter.BpmnXMLConverter;
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.editor.language.json.converter.BpmnJsonConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编辑器JSON与BPMN模型、BPMN XML之间的转换，对应模型发布和导入
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ModelConversionBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private BpmnModel bpmnModel;
+    private byte[] editorSource;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bpmnModel = BenchmarkSupport.readBpmnModel();
+        editorSource = new BpmnJsonConverter().convertToJson(bpmnModel).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 发布模型：解析编辑器源数据并转换为BPMN模型
+     */
+    @Benchmark
+    public BpmnModel editorSourceToBpmnModel() throws IOException {
+        JsonNode modelNode = objectMapper.readTree(editorSource);
+        return new BpmnJsonConverter().convertToBpmnModel(modelNode);
+    }
+
+    /**
+     * 发布模型：BPMN模型转换为部署用的XML
+     */
+    @Benchmark
+    public byte[] bpmnModelToXml() {
+        return new BpmnXMLConverter().convertToXML(bpmnModel);
+    }
+
+    /**
+     * 导入流程：BPMN模型转换为编辑器JSON
+     */
+    @Benchmark
+    public JsonNode bpmnModelToEditorJson() {
+        return new BpmnJsonConverter().convertToJson(bpmnModel);
+    }
+}
@@ -0,0 +1,74 @@
+package com.yls.activiti7demo.benchmark;
+
+import com.yls.activiti7demo.pojo.BusinessTrip;
+import com.yls.activiti7demo.pojo.ProcessInstanceView;
+import com.yls.activiti7demo.pojo.ProcessStartResult;
+import com.yls.activiti7demo.service.BusinessTripService;
+import com.yls.activiti7demo.web.ActitiviDemoController;
+import org.activiti.engine.RepositoryService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发起出差申请并完成填写审批单任务，与/activitiDemo/startProcess和/startProcess/batch的处理相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ProcessStartBenchmark {
+
+    private static final int BATCH_SIZE = 10;
+
+    private ConfigurableApplicationContext context;
+    private ActitiviDemoController controller;
+    private BusinessTripService businessTripService;
+    private String processDefinitionId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.startContext();
+        controller = context.getBean(ActitiviDemoController.class);
+        businessTripService = context.getBean(BusinessTripService.class);
+        processDefinitionId = BenchmarkSupport.deployBusinessTrip(context.getBean(RepositoryService.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ProcessInstanceView startAndCompleteFillForm() {
+        return controller.startProcess(businessTrip("bob"));
+    }
+
+    /**
+     * 每次调用发起BATCH_SIZE个流程，单个流程耗时为结果除以BATCH_SIZE
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<ProcessStartResult> startBatch() {
+        List<BusinessTrip> businessTrips = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            businessTrips.add(businessTrip(i % 2 == 0 ? "bob" : "john"));
+        }
+        return businessTripService.startBatch(businessTrips);
+    }
+
+    private BusinessTrip businessTrip(String user) {
+        BusinessTrip businessTrip = new BusinessTrip();
+        businessTrip.setProcessDefinitionId(processDefinitionId);
+        businessTrip.setUser(user);
+        businessTrip.setLocation("上海");
+        businessTrip.setReason("客户现场支持");
+        businessTrip.setDays("3");
+        return businessTrip;
+    }
+}
@@ -0,0 +1,150 @@
+package com.yls.activiti7demo.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yls.activiti7demo.pojo.BusinessTrip;
+import com.yls.activiti7demo.pojo.HistoricTaskView;
+import com.yls.activiti7demo.pojo.ModelView;
+import com.yls.activiti7demo.pojo.ProcessInstanceView;
+import com.yls.activiti7demo.service.BusinessTripService;
+import com.yls.activiti7demo.util.SecurityUtil;
+import org.activiti.api.process.model.ProcessInstance;
+import org.activiti.api.process.model.builders.ProcessPayloadBuilder;
+import org.activiti.api.process.runtime.ProcessRuntime;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.repository.Model;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 列表和发起接口的响应序列化：原先直接输出的引擎实体与现在的投影记录（含实体到记录的转换）
+ * <p>
+ * 使用应用上下文中的ObjectMapper，与接口的消息转换器一致；每页PAGE_SIZE条，与接口默认分页相同。
+ * 两种响应的大小以辅助计数器bytes随写入的结果输出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ResponseSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper objectMapper;
+    private List<Model> models;
+    private List<HistoricTaskInstance> historicTasks;
+    private ProcessInstance processInstance;
+    private int modelEntityBytes;
+    private int modelViewBytes;
+    private int historicTaskEntityBytes;
+    private int historicTaskViewBytes;
+    private int processInstanceEntityBytes;
+    private int processInstanceViewBytes;
+
+    /**
+     * 响应的字节数；输入固定，取Setup中的计算结果，不在测量中重复计算
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        public int bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        context = BenchmarkSupport.startContext();
+        objectMapper = context.getBean(ObjectMapper.class);
+        RepositoryService repositoryService = context.getBean(RepositoryService.class);
+        String processDefinitionId = BenchmarkSupport.deployBusinessTrip(repositoryService);
+
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Model model = repositoryService.newModel();
+            model.setKey("benchmark" + i);
+            model.setName("出差申请" + i);
+            model.setMetaInfo("{\"name\":\"出差申请" + i + "\",\"revision\":1,\"description\":\"\"}");
+            repositoryService.saveModel(model);
+        }
+        models = repositoryService.createModelQuery().orderByCreateTime().asc().listPage(0, PAGE_SIZE);
+
+        // 每个流程发起后完成填写审批单并停在组长审批，留下两条历史任务
+        List<BusinessTrip> businessTrips = new ArrayList<>(PAGE_SIZE / 2);
+        for (int i = 0; i < PAGE_SIZE / 2; i++) {
+            BusinessTrip businessTrip = new BusinessTrip();
+            businessTrip.setProcessDefinitionId(processDefinitionId);
+            businessTrip.setUser("bob");
+            businessTrip.setLocation("上海");
+            businessTrip.setReason("客户现场支持");
+            businessTrip.setDays("3");
+            businessTrips.add(businessTrip);
+        }
+        context.getBean(BusinessTripService.class).startBatch(businessTrips);
+        historicTasks = context.getBean(HistoryService.class).createHistoricTaskInstanceQuery()
+                .orderByHistoricTaskInstanceStartTime().asc()
+                .listPage(0, PAGE_SIZE);
+
+        try (SecurityUtil.RunAs ignored = context.getBean(SecurityUtil.class).runAs("bob")) {
+            processInstance = context.getBean(ProcessRuntime.class).start(ProcessPayloadBuilder.start()
+                    .withProcessDefinitionKey(BenchmarkSupport.PROCESS_KEY)
+                    .withName("bob的出差申请流程")
+                    .build());
+        }
+
+        modelEntityBytes = modelEntities(new Size()).length;
+        modelViewBytes = modelViews(new Size()).length;
+        historicTaskEntityBytes = historicTaskEntities(new Size()).length;
+        historicTaskViewBytes = historicTaskViews(new Size()).length;
+        processInstanceEntityBytes = processInstanceEntity(new Size()).length;
+        processInstanceViewBytes = processInstanceView(new Size()).length;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] modelEntities(Size size) throws JsonProcessingException {
+        size.bytes = modelEntityBytes;
+        return objectMapper.writeValueAsBytes(models);
+    }
+
+    @Benchmark
+    public byte[] modelViews(Size size) throws JsonProcessingException {
+        size.bytes = modelViewBytes;
+        return objectMapper.writeValueAsBytes(models.stream().map(ModelView::of).collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public byte[] historicTaskEntities(Size size) throws JsonProcessingException {
+        size.bytes = historicTaskEntityBytes;
+        return objectMapper.writeValueAsBytes(historicTasks);
+    }
+
+    @Benchmark
+    public byte[] historicTaskViews(Size size) throws JsonProcessingException {
+        size.bytes = historicTaskViewBytes;
+        return objectMapper.writeValueAsBytes(historicTasks.stream().map(HistoricTaskView::of).collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public byte[] processInstanceEntity(Size size) throws JsonProcessingException {
+        size.bytes = processInstanceEntityBytes;
+        return objectMapper.writeValueAsBytes(processInstance);
+    }
+
+    @Benchmark
+    public byte[] processInstanceView(Size size) throws JsonProcessingException {
+        size.bytes = processInstanceViewBytes;
+        return objectMapper.writeValueAsBytes(ProcessInstanceView.of(processInstance));
+    }
+}
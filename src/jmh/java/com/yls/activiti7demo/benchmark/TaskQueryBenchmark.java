@@ -0,0 +1,105 @@
+package com.yls.activiti7demo.benchmark;
+
+import com.yls.activiti7demo.pojo.BusinessTrip;
+import com.yls.activiti7demo.pojo.CursorPage;
+import com.yls.activiti7demo.service.BusinessTripService;
+import com.yls.activiti7demo.service.KeysetQueryService;
+import com.yls.activiti7demo.util.SecurityUtil;
+import org.activiti.api.runtime.shared.query.Page;
+import org.activiti.api.runtime.shared.query.Pageable;
+import org.activiti.api.task.model.Task;
+import org.activiti.api.task.runtime.TaskRuntime;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.TaskService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * handleUserTasks中的任务查询：按ID查询任务、查询可执行任务、查询用户任务列表，以及游标分页的用户任务列表
+ * <p>
+ * 预先发起TASK_COUNT个流程，每个流程在组长审批节点留下一个groupLeader的候选任务
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TaskQueryBenchmark {
+
+    private static final int TASK_COUNT = 500;
+    private static final String USERNAME = "groupLeader";
+
+    private ConfigurableApplicationContext context;
+    private SecurityUtil securityUtil;
+    private TaskRuntime taskRuntime;
+    private TaskService taskService;
+    private KeysetQueryService keysetQueryService;
+    private String taskId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.startContext();
+        securityUtil = context.getBean(SecurityUtil.class);
+        taskRuntime = context.getBean(TaskRuntime.class);
+        taskService = context.getBean(TaskService.class);
+        keysetQueryService = context.getBean(KeysetQueryService.class);
+
+        String processDefinitionId = BenchmarkSupport.deployBusinessTrip(context.getBean(RepositoryService.class));
+        List<BusinessTrip> businessTrips = new ArrayList<>(TASK_COUNT);
+        for (int i = 0; i < TASK_COUNT; i++) {
+            BusinessTrip businessTrip = new BusinessTrip();
+            businessTrip.setProcessDefinitionId(processDefinitionId);
+            businessTrip.setUser("bob");
+            businessTrip.setLocation("上海");
+            businessTrip.setReason("客户现场支持");
+            businessTrip.setDays("3");
+            businessTrips.add(businessTrip);
+        }
+        context.getBean(BusinessTripService.class).startBatch(businessTrips);
+        taskId = taskService.createTaskQuery().taskCandidateGroup(USERNAME).listPage(TASK_COUNT / 2, 1).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Task taskRuntimeTaskById() {
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(USERNAME)) {
+            return taskRuntime.task(taskId);
+        }
+    }
+
+    @Benchmark
+    public org.activiti.engine.task.Task activeTaskById() {
+        return taskService.createTaskQuery()
+                .taskId(taskId)
+                .active()
+                .singleResult();
+    }
+
+    @Benchmark
+    public Page<Task> taskRuntimeTasksFirstPage() {
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(USERNAME)) {
+            return taskRuntime.tasks(Pageable.of(0, 10));
+        }
+    }
+
+    @Benchmark
+    public Page<Task> taskRuntimeTasksDeepPage() {
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(USERNAME)) {
+            return taskRuntime.tasks(Pageable.of(TASK_COUNT - 10, 10));
+        }
+    }
+
+    @Benchmark
+    public CursorPage<org.activiti.engine.task.Task> keysetUserTasksFirstPage() {
+        return keysetQueryService.userTasks(USERNAME, null, 10);
+    }
+}
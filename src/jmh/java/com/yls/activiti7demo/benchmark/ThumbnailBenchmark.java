@@ -0,0 +1,48 @@
+package com.yls.activiti7demo.benchmark;
+
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * saveModel中的SVG转PNG缩略图：每次新建PNGTranscoder与复用同一个实例（ModelThumbnailRenderer的做法）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ThumbnailBenchmark {
+
+    private final PNGTranscoder reusedTranscoder = new PNGTranscoder();
+    private String svg;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        svg = new String(BenchmarkSupport.readResource(BenchmarkSupport.SVG_RESOURCE), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] newTranscoderPerSave() throws TranscoderException {
+        return transcode(new PNGTranscoder());
+    }
+
+    @Benchmark
+    public byte[] reusedTranscoder() throws TranscoderException {
+        return transcode(reusedTranscoder);
+    }
+
+    private byte[] transcode(PNGTranscoder transcoder) throws TranscoderException {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        transcoder.transcode(new TranscoderInput(new StringReader(svg)), new TranscoderOutput(outStream));
+        return outStream.toByteArray();
+    }
+}
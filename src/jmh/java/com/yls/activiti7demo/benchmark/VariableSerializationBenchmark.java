@@ -0,0 +1,85 @@
+package com.yls.activiti7demo.benchmark;
+
+import com.yls.activiti7demo.pojo.BusinessTrip;
+import com.yls.activiti7demo.util.JsonVariableType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BusinessTrip流程变量的序列化：原先的Java序列化（写入ACT_GE_BYTEARRAY）与带版本号的JSON（写入TEXT_列）
+ * <p>
+ * 两种格式的大小以辅助计数器bytes随写入的结果输出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class VariableSerializationBenchmark {
+
+    private final JsonVariableType<BusinessTrip> jsonType = new JsonVariableType<>("businessTripJson", BusinessTrip.class, 1);
+    private BusinessTrip businessTrip;
+    private byte[] serialized;
+    private String json;
+    private int javaBytes;
+    private int jsonBytes;
+
+    /**
+     * 写入的字节数；输入固定，取Setup中的计算结果，不在测量中重复计算
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        public int bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        businessTrip = new BusinessTrip();
+        businessTrip.setProcessDefinitionId("businessTrip:1:4");
+        businessTrip.setUser("bob");
+        businessTrip.setLocation("上海");
+        businessTrip.setReason("客户现场部署");
+        businessTrip.setDays("3");
+        serialized = serialize();
+        json = jsonType.write(businessTrip);
+        javaBytes = serialized.length;
+        jsonBytes = json.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public byte[] javaSerialize(Size size) throws IOException {
+        size.bytes = javaBytes;
+        return serialize();
+    }
+
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(businessTrip);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object javaDeserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public String jsonWrite(Size size) {
+        size.bytes = jsonBytes;
+        return jsonType.write(businessTrip);
+    }
+
+    @Benchmark
+    public BusinessTrip jsonRead() {
+        return jsonType.read(json);
+    }
+}
@@ -0,0 +1,436 @@
+package com.yls.activiti7demo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 出差申请审批流程端到端压测
+ * <p>
+ * 申请人按泊松到达率调用startProcess发起申请；每个审批人（groupLeader、departmentManager）有若干个工作线程，
+ * 循环查询currentUserTasks，按思考时间停顿后调用handleUserTasks审批通过；查看流程图的线程循环请求流程定义图（image）
+ * 和最近发起的流程实例图（image2），默认带上次响应的ETag重新验证，统计304的比例。
+ * 结束后输出各操作的吞吐量、延迟分位数，以及服务端按请求统计的JDBC语句数（服务端需启用loadtest profile）。
+ * 结果中的server记录服务端的请求执行模式（activiti-demo.performance.web.execution-mode）和profile。
+ * <p>
+ * 比较请求执行模式时，服务端分别以-Dactiviti-demo.performance.web.execution-mode=bounded、=virtual和不设置（tomcat）启动，
+ * 其余配置不变；每次用相同的到达率和时长压测，并用loadtest.output写到不同的文件，对比各操作的p99延迟、
+ * 错误数和丢弃的到达数。bounded模式下请求线程数为连接池大小减去异步执行器线程数，超出的请求在队列中等待。
+ * <p>
+ * 参数均为系统属性：
+ * <ul>
+ *     <li>loadtest.base-url：服务地址，默认http://localhost:8091</li>
+ *     <li>loadtest.applicants：申请人，默认bob,john,hannah,other</li>
+ *     <li>loadtest.approvers：审批人，默认groupLeader,departmentManager</li>
+ *     <li>loadtest.approver-threads：每个审批人的工作线程数，默认2</li>
+ *     <li>loadtest.password：所有用户的密码，默认password</li>
+ *     <li>loadtest.arrival-rate：每秒发起的申请数，默认5</li>
+ *     <li>loadtest.think-time-millis：审批前的平均思考时间，默认500</li>
+ *     <li>loadtest.duration-seconds：压测时长，默认60</li>
+ *     <li>loadtest.max-concurrency：同时进行中的发起请求上限，默认50</li>
+ *     <li>loadtest.diagram-threads：查看流程图的线程数，默认1，为0时不请求流程图</li>
+ *     <li>loadtest.diagram-interval-millis：每个线程两次查看流程图的间隔，默认200</li>
+ *     <li>loadtest.diagram-revalidate：是否带If-None-Match重新验证，默认true；为false时每次都取完整的PNG</li>
+ *     <li>loadtest.output：JSON结果文件，默认target/loadtest-result.json</li>
+ * </ul>
+ */
+public class BusinessTripLoadTest {
+
+    private static final String PROCESS_RESOURCE = "business-trip.bpmn20.xml";
+    private static final String PROCESS_KEY = "businessTrip";
+
+    private static final String START_PROCESS = "startProcess";
+    private static final String CURRENT_USER_TASKS = "currentUserTasks";
+    private static final String HANDLE_USER_TASKS = "handleUserTasks";
+    private static final String DEFINITION_DIAGRAM = "image";
+    private static final String INSTANCE_DIAGRAM = "image2";
+
+    /**
+     * 操作对应的服务端路径模板，用于匹配服务端的JDBC语句统计
+     */
+    private static final Map<String, String> PATH_TEMPLATES = Map.of(
+            START_PROCESS, "/activitiDemo/startProcess",
+            CURRENT_USER_TASKS, "/activitiDemo/currentUserTasks",
+            HANDLE_USER_TASKS, "/activitiDemo/handleUserTasks",
+            DEFINITION_DIAGRAM, "/image/{pid}",
+            INSTANCE_DIAGRAM, "/image2/{pid}");
+
+    /**
+     * 查看流程图时从最近发起的流程实例中选取
+     */
+    private static final int RECENT_INSTANCES = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final Deque<String> recentInstances = new ConcurrentLinkedDeque<>();
+    private final Map<String, String> diagramEtags = new ConcurrentHashMap<>();
+
+    private final String baseUrl = System.getProperty("loadtest.base-url", "http://localhost:8091");
+    private final List<String> applicants = list(System.getProperty("loadtest.applicants", "bob,john,hannah,other"));
+    private final List<String> approvers = list(System.getProperty("loadtest.approvers", "groupLeader,departmentManager"));
+    private final int approverThreads = Integer.getInteger("loadtest.approver-threads", 2);
+    private final String password = System.getProperty("loadtest.password", "password");
+    private final double arrivalRate = Double.parseDouble(System.getProperty("loadtest.arrival-rate", "5"));
+    private final long thinkTimeMillis = Long.getLong("loadtest.think-time-millis", 500L);
+    private final long durationSeconds = Long.getLong("loadtest.duration-seconds", 60L);
+    private final int maxConcurrency = Integer.getInteger("loadtest.max-concurrency", 50);
+    private final int diagramThreads = Integer.getInteger("loadtest.diagram-threads", 1);
+    private final long diagramIntervalMillis = Long.getLong("loadtest.diagram-interval-millis", 200L);
+    private final boolean diagramRevalidate = Boolean.parseBoolean(System.getProperty("loadtest.diagram-revalidate", "true"));
+    private final Path output = Path.of(System.getProperty("loadtest.output", "target/loadtest-result.json"));
+
+    public static void main(String[] args) throws Exception {
+        new BusinessTripLoadTest().run();
+    }
+
+    private void run() throws Exception {
+        String processDefinitionId = deployProcess();
+        System.out.printf("流程定义:%s，到达率:%.1f/s，审批人:%s x %d，思考时间:%dms，时长:%ds%n",
+                processDefinitionId, arrivalRate, approvers, approverThreads, thinkTimeMillis, durationSeconds);
+        send(HttpRequest.newBuilder(URI.create(baseUrl + "/loadtest/query-stats")).DELETE(), applicants.get(0));
+        JsonNode server = serverSettings();
+        System.out.printf("请求执行模式:%s%n", server.path("executionMode").asText("-"));
+
+        ExecutorService approverPool = Executors.newFixedThreadPool(approvers.size() * approverThreads + diagramThreads);
+        for (String approver : approvers) {
+            for (int i = 0; i < approverThreads; i++) {
+                approverPool.execute(() -> approve(approver));
+            }
+        }
+        for (int i = 0; i < diagramThreads; i++) {
+            approverPool.execute(() -> viewDiagrams(processDefinitionId));
+        }
+        ExecutorService startPool = Executors.newFixedThreadPool(maxConcurrency);
+        Semaphore inFlight = new Semaphore(maxConcurrency);
+        LongAdder dropped = new LongAdder();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long nextArrival = start;
+        int index = 0;
+        while (System.nanoTime() < end) {
+            // 指数分布的到达间隔，即泊松到达
+            nextArrival += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / arrivalRate * 1_000_000_000L);
+            long wait = nextArrival - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            String applicant = applicants.get(index++ % applicants.size());
+            if (!inFlight.tryAcquire()) {
+                // 服务端跟不上时不再排队，记为丢弃，避免到达率被客户端变相降低
+                dropped.increment();
+                continue;
+            }
+            startPool.execute(() -> {
+                try {
+                    startProcess(processDefinitionId, applicant);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        running.set(false);
+        startPool.shutdown();
+        approverPool.shutdown();
+        startPool.awaitTermination(30, TimeUnit.SECONDS);
+        approverPool.awaitTermination(30, TimeUnit.SECONDS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000D;
+
+        ObjectNode result = report(elapsedSeconds, dropped.sum());
+        result.set("server", server);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), result);
+        System.out.println("结果已写入" + output.toAbsolutePath());
+    }
+
+    /**
+     * 上传测试流程并返回最新版本的流程定义ID，内容未变化时服务端沿用已有部署
+     */
+    private String deployProcess() throws IOException, InterruptedException {
+        byte[] bpmn;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(PROCESS_RESOURCE)) {
+            bpmn = Objects.requireNonNull(in, PROCESS_RESOURCE + " not found").readAllBytes();
+        }
+        String boundary = UUID.randomUUID().toString();
+        byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"processFile\"; filename=\""
+                + PROCESS_RESOURCE + "\"\r\nContent-Type: application/xml\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[head.length + bpmn.length + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        System.arraycopy(bpmn, 0, body, head.length, bpmn.length);
+        System.arraycopy(tail, 0, body, head.length + bpmn.length, tail.length);
+        HttpResponse<String> upload = send(HttpRequest.newBuilder(URI.create(baseUrl + "/activitiDemo/uploadFileAndDeployment"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)), "admin");
+        if (upload.statusCode() != 200) {
+            throw new IllegalStateException("部署流程失败:" + upload.statusCode() + " " + upload.body());
+        }
+        HttpResponse<String> definitions = send(HttpRequest.newBuilder(
+                URI.create(baseUrl + "/activitiDemo/allProcess?size=100")).GET(), applicants.get(0));
+        JsonNode latest = null;
+        for (JsonNode definition : objectMapper.readTree(definitions.body())) {
+            if (PROCESS_KEY.equals(definition.path("key").asText())
+                    && (latest == null || definition.path("version").asInt() > latest.path("version").asInt())) {
+                latest = definition;
+            }
+        }
+        if (latest == null) {
+            throw new IllegalStateException("未找到流程定义:" + PROCESS_KEY);
+        }
+        return latest.path("id").asText();
+    }
+
+    /**
+     * 服务端未启用loadtest profile时为空
+     */
+    private JsonNode serverSettings() throws IOException, InterruptedException {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/loadtest/settings")).GET(),
+                applicants.get(0));
+        return response.statusCode() == 200 ? objectMapper.readTree(response.body()) : objectMapper.createObjectNode();
+    }
+
+    private void startProcess(String processDefinitionId, String applicant) {
+        ObjectNode businessTrip = objectMapper.createObjectNode()
+                .put("processDefinitionId", processDefinitionId)
+                .put("user", applicant)
+                .put("location", "上海")
+                .put("reason", "客户现场支持")
+                .put("days", "3");
+        HttpResponse<String> response = timed(START_PROCESS, applicant, HttpRequest.newBuilder(URI.create(baseUrl + "/activitiDemo/startProcess"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(businessTrip.toString())));
+        if (response == null || response.statusCode() != 200 || response.body().isEmpty()) {
+            return;
+        }
+        try {
+            String processInstanceId = objectMapper.readTree(response.body()).path("id").asText();
+            recentInstances.addFirst(processInstanceId);
+            if (recentInstances.size() > RECENT_INSTANCES) {
+                String evicted = recentInstances.pollLast();
+                if (evicted != null) {
+                    diagramEtags.remove("/image2/" + evicted);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 交替请求流程定义图和随机一个最近发起的流程实例图
+     */
+    private void viewDiagrams(String processDefinitionId) {
+        while (running.get()) {
+            fetchDiagram(DEFINITION_DIAGRAM, "/image/" + processDefinitionId);
+            Object[] instances = recentInstances.toArray();
+            if (instances.length > 0) {
+                fetchDiagram(INSTANCE_DIAGRAM, "/image2/" + instances[ThreadLocalRandom.current().nextInt(instances.length)]);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(diagramIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void fetchDiagram(String operation, String path) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+        String etag = diagramRevalidate ? diagramEtags.get(path) : null;
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        HttpResponse<Void> response = timed(operation, applicants.get(0), request, HttpResponse.BodyHandlers.discarding());
+        if (response == null) {
+            return;
+        }
+        if (response.statusCode() == 304) {
+            operations.get(operation).notModified.increment();
+        }
+        response.headers().firstValue("ETag").ifPresent(value -> diagramEtags.put(path, value));
+    }
+
+    private void approve(String approver) {
+        String encoded = URLEncoder.encode(approver, StandardCharsets.UTF_8);
+        while (running.get()) {
+            HttpResponse<String> response = timed(CURRENT_USER_TASKS, approver, HttpRequest.newBuilder(
+                    URI.create(baseUrl + "/activitiDemo/currentUserTasks?username=" + encoded + "&size=10")).GET());
+            List<String> taskIds = new ArrayList<>();
+            if (response != null && response.statusCode() == 200) {
+                try {
+                    objectMapper.readTree(response.body()).forEach(task -> taskIds.add(task.path("id").asText()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            try {
+                if (taskIds.isEmpty()) {
+                    TimeUnit.MILLISECONDS.sleep(200);
+                    continue;
+                }
+                // 指数分布的思考时间
+                TimeUnit.MILLISECONDS.sleep((long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * thinkTimeMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // 同一审批人的多个线程随机选取任务，减少争抢同一个任务
+            String taskId = taskIds.get(ThreadLocalRandom.current().nextInt(taskIds.size()));
+            timed(HANDLE_USER_TASKS, approver, HttpRequest.newBuilder(URI.create(baseUrl + "/activitiDemo/handleUserTasks?username="
+                    + encoded + "&taskId=" + taskId + "&size=10")).GET());
+        }
+    }
+
+    private HttpResponse<String> timed(String operation, String user, HttpRequest.Builder request) {
+        return timed(operation, user, request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> HttpResponse<T> timed(String operation, String user, HttpRequest.Builder request,
+                                      HttpResponse.BodyHandler<T> bodyHandler) {
+        OperationStats stats = operations.computeIfAbsent(operation, key -> new OperationStats());
+        long start = System.nanoTime();
+        try {
+            HttpResponse<T> response = send(request, user, bodyHandler);
+            stats.record(System.nanoTime() - start, response.statusCode() < 400);
+            return response;
+        } catch (IOException e) {
+            stats.record(System.nanoTime() - start, false);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request, String user) throws IOException, InterruptedException {
+        return send(request, user, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest.Builder request, String user,
+                                     HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        String credentials = Base64.getEncoder().encodeToString((user + ":" + password).getBytes(StandardCharsets.UTF_8));
+        return httpClient.send(request.header("Authorization", "Basic " + credentials)
+                .timeout(Duration.ofSeconds(30))
+                .build(), bodyHandler);
+    }
+
+    private ObjectNode report(double elapsedSeconds, long dropped) throws IOException, InterruptedException {
+        JsonNode queryStats = objectMapper.createObjectNode();
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/loadtest/query-stats")).GET(),
+                applicants.get(0));
+        if (response.statusCode() == 200) {
+            queryStats = objectMapper.readTree(response.body());
+        } else {
+            System.out.println("服务端未启用loadtest profile，不统计JDBC语句数");
+        }
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("elapsedSeconds", elapsedSeconds);
+        result.put("arrivalRate", arrivalRate);
+        result.put("droppedArrivals", dropped);
+        ObjectNode operationsNode = result.putObject("operations");
+        System.out.printf("%-18s %8s %8s %10s %9s %9s %9s %9s %12s%n",
+                "operation", "count", "errors", "ops/s", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)", "sql/request");
+        for (String operation : new TreeSet<>(operations.keySet())) {
+            OperationStats stats = operations.get(operation);
+            long[] latencies = stats.sortedLatencies();
+            ObjectNode node = operationsNode.putObject(operation);
+            node.put("count", latencies.length);
+            node.put("errors", stats.errors.sum());
+            node.put("throughput", latencies.length / elapsedSeconds);
+            node.put("p50Millis", percentile(latencies, 0.50));
+            node.put("p90Millis", percentile(latencies, 0.90));
+            node.put("p99Millis", percentile(latencies, 0.99));
+            node.put("maxMillis", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1_000_000D);
+            if (stats.notModified.sum() > 0) {
+                node.put("notModified", stats.notModified.sum());
+            }
+            JsonNode sql = findQueryStats(queryStats, operation);
+            if (sql != null) {
+                node.set("sql", sql);
+            }
+            System.out.printf("%-18s %8d %8d %10.1f %9.1f %9.1f %9.1f %9.1f %12s%n", operation, latencies.length,
+                    stats.errors.sum(), latencies.length / elapsedSeconds, node.get("p50Millis").asDouble(),
+                    node.get("p90Millis").asDouble(), node.get("p99Millis").asDouble(), node.get("maxMillis").asDouble(),
+                    sql == null ? "-" : String.format("%.1f", sql.path("statementsPerRequest").asDouble()));
+        }
+        if (queryStats.size() > 0) {
+            result.set("queryStats", queryStats);
+        }
+        if (dropped > 0) {
+            System.out.printf("发起请求并发达到上限，丢弃到达:%d%n", dropped);
+        }
+        return result;
+    }
+
+    /**
+     * 服务端按"请求方法 路径模板"汇总，按操作对应的路径模板匹配
+     */
+    private JsonNode findQueryStats(JsonNode queryStats, String operation) {
+        String pathTemplate = PATH_TEMPLATES.get(operation);
+        Iterator<Map.Entry<String, JsonNode>> fields = queryStats.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getKey().endsWith(" " + pathTemplate)) {
+                return field.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1_000_000D;
+    }
+
+    private static List<String> list(String value) {
+        List<String> list = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                list.add(item.trim());
+            }
+        }
+        return list;
+    }
+
+    private static final class OperationStats {
+        private final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder notModified = new LongAdder();
+
+        void record(long nanos, boolean success) {
+            latencies.add(nanos);
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
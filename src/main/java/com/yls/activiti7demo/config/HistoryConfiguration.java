@@ -0,0 +1,34 @@
+package com.yls.activiti7demo.config;
+
+import com.yls.activiti7demo.util.DefinitionHistoryManager;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.impl.history.HistoryLevel;
+import org.activiti.spring.boot.ProcessEngineConfigurationConfigurer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置了按流程定义的历史级别时替换引擎的历史管理器
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(HistoryProperties.class)
+public class HistoryConfiguration {
+
+    @Bean
+    public ProcessEngineConfigurationConfigurer definitionHistoryConfigurer(HistoryProperties properties) {
+        return configuration -> {
+            if (properties.getLevels().isEmpty()) {
+                return;
+            }
+            HistoryLevel historyLevel = configuration.getHistoryLevel();
+            if (historyLevel != HistoryLevel.FULL) {
+                log.warn("全局历史级别为{}，按流程定义配置的历史级别{}不生效", historyLevel, properties.getLevels());
+                return;
+            }
+            configuration.setHistoryManager(new DefinitionHistoryManager(configuration, historyLevel, properties.getLevels()));
+            log.info("按流程定义的历史级别: {}", properties.getLevels());
+        };
+    }
+}
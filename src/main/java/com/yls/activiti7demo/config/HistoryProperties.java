@@ -0,0 +1,38 @@
+package com.yls.activiti7demo.config;
+
+import lombok.Data;
+import org.activiti.engine.impl.history.HistoryLevel;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按流程定义KEY配置的历史级别，未配置的流程定义使用spring.activiti.history-level
+ */
+@Data
+@ConfigurationProperties(prefix = "activiti-demo.history")
+public class HistoryProperties implements Validator {
+
+    /**
+     * 流程定义KEY -> 历史级别，只能在全局级别的基础上降为audit
+     */
+    private Map<String, HistoryLevel> levels = new LinkedHashMap<>();
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return HistoryProperties.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        HistoryProperties properties = (HistoryProperties) target;
+        properties.getLevels().forEach((key, level) -> {
+            if (level != HistoryLevel.AUDIT && level != HistoryLevel.FULL) {
+                errors.rejectValue("levels[" + key + "]", "range", "流程定义的历史级别只能配置为audit或full");
+            }
+        });
+    }
+}
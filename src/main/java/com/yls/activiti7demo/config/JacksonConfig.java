@@ -0,0 +1,18 @@
+package com.yls.activiti7demo.config;
+
+import com.yls.activiti7demo.util.FieldSelection;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * 未经过{@link FieldSelection#select}包装的响应对象输出全部字段
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldSelectionCustomizer() {
+        return builder -> builder.filters(FieldSelection.ALL_FIELDS);
+    }
+}
@@ -0,0 +1,242 @@
+package com.yls.activiti7demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.asyncexecutor.DefaultAsyncJobExecutor;
+import org.activiti.spring.SpringProcessEngineConfiguration;
+import org.activiti.spring.boot.ProcessEngineConfigurationConfigurer;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.task.TaskExecutorCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * 应用{@link PerformanceProperties}，并在启动完成后输出实际生效的参数
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(PerformanceProperties.class)
+public class PerformanceConfiguration {
+
+    private static final String TASK_TABLE = "ACT_RU_TASK";
+    private static final String TASK_CREATE_TIME_INDEX = "ACT_IDX_TASK_CREATE_ID";
+
+    /**
+     * 在spring.datasource.hikari绑定之后、连接池启动之前覆盖连接池参数
+     */
+    @Bean
+    public static BeanPostProcessor hikariTuningPostProcessor(ObjectProvider<PerformanceProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    PerformanceProperties.Pool pool = properties.getObject().getPool();
+                    if (pool.getMaximumPoolSize() != null) {
+                        dataSource.setMaximumPoolSize(pool.getMaximumPoolSize());
+                    }
+                    if (pool.getMinimumIdle() != null) {
+                        dataSource.setMinimumIdle(pool.getMinimumIdle());
+                    }
+                    if (pool.getConnectionTimeout() != null) {
+                        dataSource.setConnectionTimeout(pool.getConnectionTimeout().toMillis());
+                    }
+                    if (pool.getIdleTimeout() != null) {
+                        dataSource.setIdleTimeout(pool.getIdleTimeout().toMillis());
+                    }
+                    if (pool.getMaxLifetime() != null) {
+                        dataSource.setMaxLifetime(pool.getMaxLifetime().toMillis());
+                    }
+                    if (pool.getLeakDetectionThreshold() != null) {
+                        dataSource.setLeakDetectionThreshold(pool.getLeakDetectionThreshold().toMillis());
+                    }
+                    pool.getDataSourceProperties().forEach(dataSource::addDataSourceProperty);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * SpringAsyncExecutor把作业提交给applicationTaskExecutor，异步执行器的线程数在这里设置
+     */
+    @Bean
+    public TaskExecutorCustomizer asyncExecutorPoolCustomizer(PerformanceProperties properties) {
+        PerformanceProperties.AsyncExecutor asyncExecutor = properties.getAsyncExecutor();
+        return taskExecutor -> {
+            if (asyncExecutor.getCorePoolSize() != null) {
+                taskExecutor.setCorePoolSize(asyncExecutor.getCorePoolSize());
+            }
+            if (asyncExecutor.getMaxPoolSize() != null) {
+                taskExecutor.setMaxPoolSize(asyncExecutor.getMaxPoolSize());
+            }
+            if (asyncExecutor.getQueueCapacity() != null) {
+                taskExecutor.setQueueCapacity(asyncExecutor.getQueueCapacity());
+            }
+        };
+    }
+
+    /**
+     * 未配置请求执行模式时设置Tomcat线程池的最大线程数，在server.tomcat.*之后应用
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> tomcatThreadsCustomizer(PerformanceProperties properties) {
+        return new TomcatThreadsCustomizer(properties.getWeb().getMaxThreads());
+    }
+
+    @Bean
+    public ProcessEngineConfigurationConfigurer engineTuningConfigurer(PerformanceProperties properties) {
+        PerformanceProperties.Engine engine = properties.getEngine();
+        PerformanceProperties.AsyncExecutor asyncExecutor = properties.getAsyncExecutor();
+        return configuration -> {
+            if (engine.getProcessDefinitionCacheLimit() != null) {
+                configuration.setProcessDefinitionCacheLimit(engine.getProcessDefinitionCacheLimit());
+            }
+            if (engine.getBulkInsertEnabled() != null) {
+                configuration.setBulkInsertEnabled(engine.getBulkInsertEnabled());
+            }
+            if (engine.getMaxStatementsInBulkInsert() != null) {
+                configuration.setMaxNrOfStatementsInBulkInsert(engine.getMaxStatementsInBulkInsert());
+            }
+            if (asyncExecutor.getActivate() != null) {
+                configuration.setAsyncExecutorActivate(asyncExecutor.getActivate());
+            }
+            if (configuration.getAsyncExecutor() instanceof DefaultAsyncJobExecutor jobExecutor) {
+                if (asyncExecutor.getMaxJobsPerAcquisition() != null) {
+                    jobExecutor.setMaxAsyncJobsDuePerAcquisition(asyncExecutor.getMaxJobsPerAcquisition());
+                }
+                if (asyncExecutor.getAcquireWaitTime() != null) {
+                    jobExecutor.setDefaultAsyncJobAcquireWaitTimeInMillis((int) asyncExecutor.getAcquireWaitTime().toMillis());
+                }
+            }
+        };
+    }
+
+    /**
+     * 引擎建表之后、接收请求之前补充索引；索引已存在时跳过，创建失败只记录警告
+     */
+    @Bean
+    public SmartInitializingSingleton taskCreateTimeIndexInitializer(PerformanceProperties properties,
+                                                                     ProcessEngine processEngine,
+                                                                     JdbcTemplate jdbcTemplate) {
+        return () -> {
+            if (!properties.getEngine().isTaskCreateTimeIndex()) {
+                return;
+            }
+            try {
+                Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                        hasIndex(connection.getMetaData(), TASK_TABLE, TASK_CREATE_TIME_INDEX)
+                                || hasIndex(connection.getMetaData(), TASK_TABLE.toLowerCase(Locale.ROOT), TASK_CREATE_TIME_INDEX));
+                if (!Boolean.TRUE.equals(exists)) {
+                    jdbcTemplate.execute("CREATE INDEX " + TASK_CREATE_TIME_INDEX + " ON " + TASK_TABLE + "(CREATE_TIME_, ID_)");
+                    log.info("已创建索引{}({}: CREATE_TIME_, ID_)", TASK_CREATE_TIME_INDEX, TASK_TABLE);
+                }
+            } catch (RuntimeException e) {
+                log.warn("创建索引{}失败，待办任务游标分页将不能按索引顺序扫描", TASK_CREATE_TIME_INDEX, e);
+            }
+        };
+    }
+
+    private static boolean hasIndex(DatabaseMetaData metaData, String table, String index) throws SQLException {
+        try (ResultSet indexes = metaData.getIndexInfo(null, null, table, false, true)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 启动报告：输出连接池、异步执行器、请求线程和引擎的实际参数，线程数与连接数的比例已在绑定时校验
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportEffectiveSettings(ApplicationReadyEvent event) {
+        ApplicationContext context = event.getApplicationContext();
+        Environment environment = context.getEnvironment();
+        PerformanceProperties properties = context.getBean(PerformanceProperties.class);
+
+        int poolSize = -1;
+        DataSource dataSource = context.getBean(DataSource.class);
+        if (dataSource instanceof HikariDataSource hikari) {
+            poolSize = hikari.getMaximumPoolSize();
+            log.info("连接池: maximumPoolSize={}, minimumIdle={}, connectionTimeout={}ms, maxLifetime={}ms, dataSourceProperties={}",
+                    hikari.getMaximumPoolSize(), hikari.getMinimumIdle(), hikari.getConnectionTimeout(),
+                    hikari.getMaxLifetime(), hikari.getDataSourceProperties().keySet());
+        }
+
+        int asyncThreads = 0;
+        SpringProcessEngineConfiguration configuration = context.getBean(SpringProcessEngineConfiguration.class);
+        if (configuration.isAsyncExecutorActivate() && context.containsBean("applicationTaskExecutor")
+                && context.getBean("applicationTaskExecutor") instanceof ThreadPoolTaskExecutor taskExecutor) {
+            // 默认队列无界，线程数不会超过核心线程数
+            asyncThreads = properties.getAsyncExecutor().getQueueCapacity() == null
+                    ? taskExecutor.getCorePoolSize() : taskExecutor.getMaxPoolSize();
+            log.info("异步执行器: 线程数={}", asyncThreads);
+        }
+        Integer maxJobsPerAcquisition = configuration.getAsyncExecutor() instanceof DefaultAsyncJobExecutor jobExecutor
+                ? jobExecutor.getMaxAsyncJobsDuePerAcquisition() : null;
+        log.info("流程引擎: processDefinitionCacheLimit={}, bulkInsertEnabled={}, maxStatementsInBulkInsert={}, asyncExecutorActivate={}, maxAsyncJobsDuePerAcquisition={}",
+                configuration.getProcessDefinitionCacheLimit(), configuration.isBulkInsertEnabled(),
+                configuration.getMaxNrOfStatementsInBulkInsert(), configuration.isAsyncExecutorActivate(),
+                maxJobsPerAcquisition);
+
+        String executionMode = properties.getWeb().getExecutionMode();
+        if (executionMode == null) {
+            Integer maxThreads = properties.getWeb().getMaxThreads();
+            if (maxThreads == null) {
+                maxThreads = environment.getProperty("server.tomcat.threads.max", Integer.class, PerformanceProperties.TOMCAT_DEFAULT_MAX_THREADS);
+            }
+            log.info("请求线程: Tomcat线程池，最大线程数={}", maxThreads);
+        } else if (PerformanceProperties.BOUNDED.equals(executionMode.toLowerCase(Locale.ROOT))) {
+            log.info("请求线程: bounded，线程数={}", Math.max(1, poolSize - properties.asyncThreads()));
+        } else {
+            log.info("请求线程: 虚拟线程，并发受连接池限制");
+        }
+    }
+
+    /**
+     * TomcatWebServerFactoryCustomizer按server.tomcat.threads.max设置线程数，本定制器排在其后，覆盖其设置
+     */
+    private record TomcatThreadsCustomizer(Integer maxThreads)
+            implements WebServerFactoryCustomizer<TomcatServletWebServerFactory>, Ordered {
+
+        @Override
+        public void customize(TomcatServletWebServerFactory factory) {
+            if (maxThreads == null) {
+                return;
+            }
+            factory.addConnectorCustomizers(connector -> {
+                if (connector.getProtocolHandler() instanceof AbstractProtocol<?> protocol) {
+                    protocol.setMaxThreads(maxThreads);
+                }
+            });
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.yls.activiti7demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 连接池、流程引擎、请求线程的性能参数，以及分页和批量接口的请求大小限制
+ * <p>
+ * 未配置的参数保持Spring Boot和Activiti的默认值。绑定时校验取值范围和线程数与连接数的比例，
+ * 不满足时启动失败。
+ */
+@Data
+@ConfigurationProperties(prefix = "activiti-demo.performance")
+public class PerformanceProperties implements Validator {
+
+    public static final String BOUNDED = "bounded";
+    public static final String VIRTUAL = "virtual";
+
+    /**
+     * Tomcat线程池的默认最大线程数，未配置web.maxThreads时按此校验
+     */
+    public static final int TOMCAT_DEFAULT_MAX_THREADS = 200;
+
+    /**
+     * 请求线程数与可用连接数（连接池大小减去异步执行器线程数）的最大比例，超过时启动失败
+     */
+    private int maxThreadsPerConnection = 4;
+
+    private final Pool pool = new Pool();
+
+    private final AsyncExecutor asyncExecutor = new AsyncExecutor();
+
+    private final Engine engine = new Engine();
+
+    private final Batch batch = new Batch();
+
+    private final BulkDelete bulkDelete = new BulkDelete();
+
+    private final Web web = new Web();
+
+    private final Page page = new Page();
+
+    /**
+     * 异步执行器占用的连接数，即其最大线程数；明确关闭异步执行器或未配置线程数时为0
+     */
+    public int asyncThreads() {
+        if (Boolean.FALSE.equals(asyncExecutor.getActivate())) {
+            return 0;
+        }
+        Integer threads = asyncExecutor.getMaxPoolSize() != null ? asyncExecutor.getMaxPoolSize() : asyncExecutor.getCorePoolSize();
+        return threads == null ? 0 : threads;
+    }
+
+    /**
+     * Hikari连接池
+     */
+    @Data
+    public static class Pool {
+        private Integer maximumPoolSize;
+        private Integer minimumIdle;
+        private Duration connectionTimeout;
+        private Duration idleTimeout;
+        private Duration maxLifetime;
+        private Duration leakDetectionThreshold;
+        /**
+         * JDBC驱动参数，如MySQL的cachePrepStmts、rewriteBatchedStatements
+         */
+        private Map<String, String> dataSourceProperties = new LinkedHashMap<>();
+    }
+
+    /**
+     * Activiti异步执行器，作业在Spring Boot的applicationTaskExecutor中执行
+     */
+    @Data
+    public static class AsyncExecutor {
+        private Boolean activate;
+        private Integer corePoolSize;
+        private Integer maxPoolSize;
+        private Integer queueCapacity;
+        /**
+         * 每次获取的到期异步作业数
+         */
+        private Integer maxJobsPerAcquisition;
+        /**
+         * 没有到期作业时两次获取之间的等待时间
+         */
+        private Duration acquireWaitTime;
+    }
+
+    /**
+     * 流程引擎
+     */
+    @Data
+    public static class Engine {
+        /**
+         * 流程定义缓存条数，-1为不限制
+         */
+        private Integer processDefinitionCacheLimit;
+        private Boolean bulkInsertEnabled;
+        private Integer maxStatementsInBulkInsert;
+        /**
+         * 启动时为ACT_RU_TASK补充(CREATE_TIME_, ID_)索引，供待办任务的游标分页按顺序扫描
+         */
+        private boolean taskCreateTimeIndex = true;
+    }
+
+    /**
+     * 批量接口：每次请求的最大条数和每个事务处理的条数
+     */
+    @Data
+    public static class Batch {
+        /**
+         * 批量审批每次请求的最大任务数，超过时返回400
+         */
+        private int maxTaskSize = 500;
+        private int taskChunkSize = 50;
+        /**
+         * 批量创建流程实例每次请求的最大条数，超过时返回400
+         */
+        private int maxStartSize = 1000;
+        private int startChunkSize = 100;
+    }
+
+    /**
+     * 请求执行模式和请求线程数
+     */
+    @Data
+    public static class Web {
+        /**
+         * bounded或virtual，未配置时使用Tomcat线程池，见{@link WebExecutionConfiguration}
+         */
+        private String executionMode;
+        /**
+         * bounded模式下排队等待的请求数
+         */
+        private int queueCapacity = 200;
+        /**
+         * 未配置执行模式时Tomcat线程池的最大线程数，覆盖server.tomcat.threads.max
+         */
+        private Integer maxThreads;
+    }
+
+    /**
+     * 列表接口
+     */
+    @Data
+    public static class Page {
+        /**
+         * 每页最大条数，超过时按最大条数返回
+         */
+        private int maxSize = 100;
+    }
+
+    /**
+     * 后台批量删除流程实例
+     */
+    @Data
+    public static class BulkDelete {
+        /**
+         * 每个事务删除的流程实例数，事务之间暂停pauseMillis
+         */
+        private int chunkSize = 200;
+        private long pauseMillis = 100;
+        /**
+         * 排队等待执行的删除任务数
+         */
+        private int queueCapacity = 5;
+        /**
+         * 任务结束后保留进度的时间
+         */
+        private Duration jobRetention = Duration.ofDays(1);
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return PerformanceProperties.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        PerformanceProperties properties = (PerformanceProperties) target;
+        Pool pool = properties.getPool();
+        AsyncExecutor asyncExecutor = properties.getAsyncExecutor();
+        Engine engine = properties.getEngine();
+        Batch batch = properties.getBatch();
+        BulkDelete bulkDelete = properties.getBulkDelete();
+        Web web = properties.getWeb();
+        if (properties.getMaxThreadsPerConnection() < 1) {
+            errors.rejectValue("maxThreadsPerConnection", "min", "线程数与连接数的比例至少为1");
+        }
+        if (pool.getMaximumPoolSize() != null && pool.getMaximumPoolSize() < 2) {
+            errors.rejectValue("pool.maximumPoolSize", "min", "连接池至少需要2个连接");
+        }
+        if (pool.getMaximumPoolSize() != null && pool.getMinimumIdle() != null
+                && pool.getMinimumIdle() > pool.getMaximumPoolSize()) {
+            errors.rejectValue("pool.minimumIdle", "range", "最小空闲连接数不能大于最大连接数");
+        }
+        if (asyncExecutor.getCorePoolSize() != null && asyncExecutor.getMaxPoolSize() != null
+                && asyncExecutor.getCorePoolSize() > asyncExecutor.getMaxPoolSize()) {
+            errors.rejectValue("asyncExecutor.corePoolSize", "range", "异步执行器核心线程数不能大于最大线程数");
+        }
+        // 每个异步作业线程执行期间占用一个连接，线程数不小于连接数时请求线程将拿不到连接
+        if (pool.getMaximumPoolSize() != null && properties.asyncThreads() >= pool.getMaximumPoolSize()) {
+            errors.rejectValue("asyncExecutor.maxPoolSize", "ratio", "异步执行器线程数必须小于连接池大小，需为请求线程保留连接");
+        }
+        if (web.getExecutionMode() != null
+                && !Set.of(BOUNDED, VIRTUAL).contains(web.getExecutionMode().toLowerCase(Locale.ROOT))) {
+            errors.rejectValue("web.executionMode", "unknown", "请求执行模式只能为bounded或virtual");
+        }
+        if (web.getQueueCapacity() < 1) {
+            errors.rejectValue("web.queueCapacity", "min", "请求队列容量至少为1");
+        }
+        if (web.getMaxThreads() != null && web.getMaxThreads() < 1) {
+            errors.rejectValue("web.maxThreads", "min", "请求线程数至少为1");
+        }
+        // bounded模式的线程数即可用连接数，virtual模式的并发受连接池限制，只需校验Tomcat线程池
+        if (web.getExecutionMode() == null && pool.getMaximumPoolSize() != null) {
+            int availableConnections = pool.getMaximumPoolSize() - properties.asyncThreads();
+            int requestThreads = web.getMaxThreads() != null ? web.getMaxThreads() : TOMCAT_DEFAULT_MAX_THREADS;
+            if (availableConnections >= 1 && requestThreads > availableConnections * properties.getMaxThreadsPerConnection()) {
+                errors.rejectValue("web.maxThreads", "ratio", "请求线程数" + requestThreads + "超过可用连接数"
+                        + availableConnections + "的" + properties.getMaxThreadsPerConnection() + "倍，高并发时线程将阻塞在获取连接上");
+            }
+        }
+        if (properties.getPage().getMaxSize() < 1) {
+            errors.rejectValue("page.maxSize", "min", "每页最大条数至少为1");
+        }
+        if (engine.getProcessDefinitionCacheLimit() != null
+                && engine.getProcessDefinitionCacheLimit() < 1 && engine.getProcessDefinitionCacheLimit() != -1) {
+            errors.rejectValue("engine.processDefinitionCacheLimit", "range", "流程定义缓存条数必须大于0，或为-1表示不限制");
+        }
+        if (engine.getMaxStatementsInBulkInsert() != null && engine.getMaxStatementsInBulkInsert() < 1) {
+            errors.rejectValue("engine.maxStatementsInBulkInsert", "min", "批量插入条数至少为1");
+        }
+        if (batch.getMaxTaskSize() < 1) {
+            errors.rejectValue("batch.maxTaskSize", "min", "批量审批的最大任务数至少为1");
+        }
+        if (batch.getTaskChunkSize() < 1) {
+            errors.rejectValue("batch.taskChunkSize", "min", "批量审批每个事务的任务数至少为1");
+        }
+        if (batch.getMaxStartSize() < 1) {
+            errors.rejectValue("batch.maxStartSize", "min", "批量创建流程实例的最大条数至少为1");
+        }
+        if (batch.getStartChunkSize() < 1) {
+            errors.rejectValue("batch.startChunkSize", "min", "批量创建流程实例每个事务的条数至少为1");
+        }
+        if (bulkDelete.getChunkSize() < 1) {
+            errors.rejectValue("bulkDelete.chunkSize", "min", "批量删除每个事务的流程实例数至少为1");
+        }
+        if (bulkDelete.getPauseMillis() < 0) {
+            errors.rejectValue("bulkDelete.pauseMillis", "min", "批量删除的暂停时间不能为负数");
+        }
+        if (bulkDelete.getQueueCapacity() < 0) {
+            errors.rejectValue("bulkDelete.queueCapacity", "min", "批量删除的队列长度不能为负数");
+        }
+    }
+}
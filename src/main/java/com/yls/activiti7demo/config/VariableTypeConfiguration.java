@@ -0,0 +1,32 @@
+package com.yls.activiti7demo.config;
+
+import com.yls.activiti7demo.pojo.BusinessTrip;
+import com.yls.activiti7demo.util.JsonVariableType;
+import org.activiti.engine.impl.variable.VariableType;
+import org.activiti.spring.boot.ProcessEngineConfigurationConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 业务对象流程变量类型，排在内置类型之前，优先于Java序列化
+ * <p>
+ * 已保存的变量按其记录的类型名读取，切换后运行中的流程不受影响
+ */
+@Configuration
+public class VariableTypeConfiguration {
+
+    @Bean
+    public ProcessEngineConfigurationConfigurer jsonVariableTypesConfigurer() {
+        return configuration -> {
+            List<VariableType> types = new ArrayList<>();
+            if (configuration.getCustomPreVariableTypes() != null) {
+                types.addAll(configuration.getCustomPreVariableTypes());
+            }
+            types.add(new JsonVariableType<>("businessTripJson", BusinessTrip.class, 1));
+            configuration.setCustomPreVariableTypes(types);
+        };
+    }
+}
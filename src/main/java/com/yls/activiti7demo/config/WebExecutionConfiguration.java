@@ -0,0 +1,88 @@
+package com.yls.activiti7demo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Locale;
+import java.util.concurrent.*;
+
+/**
+ * 请求执行模式
+ * <p>
+ * activiti-demo.performance.web.execution-mode未配置时使用Tomcat线程池，取值在{@link PerformanceProperties}绑定时校验。
+ * <ul>
+ *     <li>virtual：每个请求一个虚拟线程，JDK不支持虚拟线程时退化为bounded</li>
+ *     <li>bounded：线程数为连接池大小减去异步执行器线程数的有界线程池，超出的请求在有界队列中等待，队列满时拒绝连接</li>
+ * </ul>
+ * 所有控制器都通过引擎同步访问JDBC，工作线程数超过连接数只会让线程阻塞在获取连接上。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "activiti-demo.performance.web", name = "execution-mode")
+public class WebExecutionConfiguration {
+
+    @Bean
+    public RequestExecutorCustomizer requestExecutorCustomizer(
+            @Value("${activiti-demo.performance.pool.maximum-pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int connectionPoolSize,
+            PerformanceProperties performanceProperties) {
+        String executionMode = performanceProperties.getWeb().getExecutionMode();
+        int queueCapacity = performanceProperties.getWeb().getQueueCapacity();
+        ExecutorService executor = null;
+        if (PerformanceProperties.VIRTUAL.equals(executionMode.toLowerCase(Locale.ROOT))) {
+            executor = newVirtualThreadExecutor();
+            if (executor == null) {
+                log.warn("当前JDK不支持虚拟线程，请求执行模式退化为bounded");
+            }
+        }
+        if (executor == null) {
+            // 异步作业线程执行期间各占一个连接，请求线程只使用剩余的连接
+            int threads = Math.max(1, connectionPoolSize - performanceProperties.asyncThreads());
+            executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("http-request-"));
+            log.info("请求执行模式:bounded，线程数:{}，队列容量:{}", threads, queueCapacity);
+        } else {
+            log.info("请求执行模式:virtual");
+        }
+        return new RequestExecutorCustomizer(executor);
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，项目按Java 17编译，运行在JDK 21及以上时生效
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 替换Tomcat的请求线程池，应用关闭时关闭线程池
+     */
+    public static class RequestExecutorCustomizer implements TomcatProtocolHandlerCustomizer<ProtocolHandler>, DisposableBean {
+
+        private final ExecutorService executor;
+
+        RequestExecutorCustomizer(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void customize(ProtocolHandler protocolHandler) {
+            protocolHandler.setExecutor(executor);
+        }
+
+        @Override
+        public void destroy() {
+            executor.shutdown();
+        }
+    }
+}
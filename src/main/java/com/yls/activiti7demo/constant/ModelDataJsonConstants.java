@@ -8,4 +8,16 @@ public interface ModelDataJsonConstants {
     String MODEL_NAME = "name";
     String MODEL_REVISION = "revision";
     String MODEL_DESCRIPTION = "description";
+    /**
+     * 最近一次部署的BPMN内容摘要
+     */
+    String MODEL_BPMN_HASH = "bpmnHash";
+    /**
+     * 最近一次部署时的模型源数据摘要
+     */
+    String MODEL_SOURCE_HASH = "sourceHash";
+    /**
+     * 编辑器源数据版本，增量保存时用于乐观并发控制
+     */
+    String MODEL_EDITOR_REVISION = "editorRevision";
 }
@@ -0,0 +1,106 @@
+package com.yls.activiti7demo.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 待办收件箱
+ * <p>
+ * 每个任务按可办理人展开为多行：已分配的任务只有USER_办理人一行，未分配的任务每个候选用户一行USER_用户、
+ * 每个候选用户组一行GROUP_用户组。主键以ownerKey开头，查询收件箱是一次主键范围扫描。
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@IdClass(TaskInboxEntry.Key.class)
+@Table(name = "DEMO_TASK_INBOX", indexes = {
+        @Index(name = "IDX_DEMO_INBOX_OWNER_TIME", columnList = "OWNER_KEY_,CREATE_TIME_"),
+        @Index(name = "IDX_DEMO_INBOX_TASK", columnList = "TASK_ID_")
+})
+public class TaskInboxEntry implements Persistable<TaskInboxEntry.Key> {
+
+    public static final String USER_PREFIX = "USER_";
+    public static final String GROUP_PREFIX = "GROUP_";
+
+    @Id
+    @Column(name = "OWNER_KEY_", length = 191)
+    private String ownerKey;
+
+    @Id
+    @Column(name = "TASK_ID_", length = 64)
+    private String taskId;
+
+    @Column(name = "NAME_")
+    private String name;
+
+    @Column(name = "PROC_INST_ID_", length = 64)
+    private String processInstanceId;
+
+    @Column(name = "PROC_DEF_ID_", length = 64)
+    private String processDefinitionId;
+
+    @Column(name = "ASSIGNEE_")
+    private String assignee;
+
+    @Column(name = "CREATE_TIME_")
+    private Date createTime;
+
+    /**
+     * 收件箱只插入和删除，不更新，避免保存前先按主键查询一次
+     */
+    @JsonIgnore
+    @Transient
+    private boolean persisted;
+
+    public TaskInboxEntry(String ownerKey, String taskId, String name, String processInstanceId,
+                          String processDefinitionId, String assignee, Date createTime) {
+        this.ownerKey = ownerKey;
+        this.taskId = taskId;
+        this.name = name;
+        this.processInstanceId = processInstanceId;
+        this.processDefinitionId = processDefinitionId;
+        this.assignee = assignee;
+        this.createTime = createTime;
+    }
+
+    public static String userKey(String userId) {
+        return USER_PREFIX + userId;
+    }
+
+    public static String groupKey(String groupId) {
+        return GROUP_PREFIX + groupId;
+    }
+
+    @JsonIgnore
+    @Override
+    public Key getId() {
+        return new Key(ownerKey, taskId);
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String ownerKey;
+        private String taskId;
+    }
+}
@@ -0,0 +1,38 @@
+package com.yls.activiti7demo.pojo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.history.HistoricProcessInstance;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 归档文件中的流程实例，每行一个，包含历史任务、活动和变量
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ArchivedProcessInstance(String id, String name, String processDefinitionId, String processDefinitionKey,
+                                      String businessKey, String startUserId, Date startTime, Date endTime,
+                                      Long durationInMillis, String deleteReason, List<HistoricTaskView> tasks,
+                                      List<Activity> activities, Map<String, Object> variables) {
+
+    public static ArchivedProcessInstance of(HistoricProcessInstance processInstance, List<HistoricTaskView> tasks,
+                                             List<Activity> activities, Map<String, Object> variables) {
+        return new ArchivedProcessInstance(processInstance.getId(), processInstance.getName(),
+                processInstance.getProcessDefinitionId(), processInstance.getProcessDefinitionKey(),
+                processInstance.getBusinessKey(), processInstance.getStartUserId(), processInstance.getStartTime(),
+                processInstance.getEndTime(), processInstance.getDurationInMillis(), processInstance.getDeleteReason(),
+                tasks, activities, variables);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Activity(String activityId, String activityName, String activityType, String assignee,
+                           Date startTime, Date endTime) {
+
+        public static Activity of(HistoricActivityInstance activity) {
+            return new Activity(activity.getActivityId(), activity.getActivityName(), activity.getActivityType(),
+                    activity.getAssignee(), activity.getStartTime(), activity.getEndTime());
+        }
+    }
+}
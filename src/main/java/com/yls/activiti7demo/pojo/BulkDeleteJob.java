@@ -0,0 +1,27 @@
+package com.yls.activiti7demo.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 批量删除任务，进度由删除线程更新
+ */
+@Data
+public class BulkDeleteJob {
+
+    private final String jobId;
+    private final BulkDeleteRequest request;
+    private final Date createTime = new Date();
+    private volatile JobStatus status = JobStatus.PENDING;
+    /**
+     * 匹配的流程实例数（含运行中和已结束）
+     */
+    private volatile int totalInstances;
+    private volatile int deletedInstances;
+    private volatile int failedInstances;
+    private volatile int totalDeployments;
+    private volatile int deletedDeployments;
+    private volatile String message;
+    private volatile Date finishTime;
+}
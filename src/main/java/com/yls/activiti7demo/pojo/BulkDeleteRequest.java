@@ -0,0 +1,29 @@
+package com.yls.activiti7demo.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 批量删除请求，过滤条件为空表示不限制
+ */
+@Data
+public class BulkDeleteRequest {
+
+    private String processDefinitionKey;
+    /**
+     * 流程发起人
+     */
+    private String startedBy;
+    private Date startedAfter;
+    private Date startedBefore;
+    /**
+     * 删除流程实例后同时删除流程定义的部署（processDefinitionKey为空时为全部部署），
+     * 只能在未按发起人和时间过滤时使用
+     */
+    private boolean deleteDeployments;
+    /**
+     * 只统计将被删除的数量，不删除
+     */
+    private boolean dryRun;
+}
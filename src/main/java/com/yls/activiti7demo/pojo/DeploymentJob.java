@@ -0,0 +1,20 @@
+package com.yls.activiti7demo.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 模型异步部署任务，状态由部署线程更新
+ */
+@Data
+public class DeploymentJob {
+
+    private final String jobId;
+    private final String modelId;
+    private final Date createTime = new Date();
+    private volatile JobStatus status = JobStatus.PENDING;
+    private volatile String deploymentId;
+    private volatile String message;
+    private volatile Date finishTime;
+}
@@ -0,0 +1,24 @@
+package com.yls.activiti7demo.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.yls.activiti7demo.util.FieldSelection;
+import org.activiti.engine.history.HistoricTaskInstance;
+
+import java.util.Date;
+
+/**
+ * 流程实例历史任务
+ */
+@JsonFilter(FieldSelection.FILTER_ID)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record HistoricTaskView(String id, String name, String taskDefinitionKey, String assignee,
+                               String processInstanceId, Date startTime, Date endTime,
+                               Long durationInMillis, String deleteReason) {
+
+    public static HistoricTaskView of(HistoricTaskInstance task) {
+        return new HistoricTaskView(task.getId(), task.getName(), task.getTaskDefinitionKey(), task.getAssignee(),
+                task.getProcessInstanceId(), task.getStartTime(), task.getEndTime(),
+                task.getDurationInMillis(), task.getDeleteReason());
+    }
+}
@@ -0,0 +1,11 @@
+package com.yls.activiti7demo.pojo;
+
+/**
+ * 后台任务状态
+ */
+public enum JobStatus {
+    PENDING,
+    RUNNING,
+    SUCCESS,
+    FAILURE
+}
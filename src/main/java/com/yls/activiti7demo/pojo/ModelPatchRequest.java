@@ -0,0 +1,32 @@
+package com.yls.activiti7demo.pojo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+/**
+ * 模型增量保存请求
+ */
+@Data
+public class ModelPatchRequest {
+
+    /**
+     * 客户端所基于的模型版本，与服务端不一致时拒绝保存
+     */
+    private int revision;
+    /**
+     * 针对编辑器源数据的JSON Patch(RFC 6902)操作数组
+     */
+    private JsonNode patch;
+    /**
+     * 流程模型名称，为空则不修改
+     */
+    private String name;
+    /**
+     * 流程模型描述，为空则不修改
+     */
+    private String description;
+    /**
+     * 流程图SVG，为空则不更新缩略图
+     */
+    private String svg_xml;
+}
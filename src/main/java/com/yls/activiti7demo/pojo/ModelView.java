@@ -0,0 +1,22 @@
+package com.yls.activiti7demo.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.yls.activiti7demo.util.FieldSelection;
+import org.activiti.engine.repository.Model;
+
+import java.util.Date;
+
+/**
+ * 模型列表项
+ */
+@JsonFilter(FieldSelection.FILTER_ID)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ModelView(String id, String key, String name, Integer version, String category,
+                        String deploymentId, Date createTime, Date lastUpdateTime) {
+
+    public static ModelView of(Model model) {
+        return new ModelView(model.getId(), model.getKey(), model.getName(), model.getVersion(), model.getCategory(),
+                model.getDeploymentId(), model.getCreateTime(), model.getLastUpdateTime());
+    }
+}
@@ -0,0 +1,25 @@
+package com.yls.activiti7demo.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.yls.activiti7demo.util.FieldSelection;
+import org.activiti.api.process.model.ProcessInstance;
+
+import java.util.Date;
+
+/**
+ * 流程实例
+ */
+@JsonFilter(FieldSelection.FILTER_ID)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProcessInstanceView(String id, String name, String processDefinitionId, String processDefinitionKey,
+                                  String businessKey, String initiator, String status, Date startDate) {
+
+    public static ProcessInstanceView of(ProcessInstance processInstance) {
+        return new ProcessInstanceView(processInstance.getId(), processInstance.getName(),
+                processInstance.getProcessDefinitionId(), processInstance.getProcessDefinitionKey(),
+                processInstance.getBusinessKey(), processInstance.getInitiator(),
+                processInstance.getStatus() == null ? null : processInstance.getStatus().name(),
+                processInstance.getStartDate());
+    }
+}
@@ -0,0 +1,27 @@
+package com.yls.activiti7demo.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量发起流程中单条出差申请的处理结果，index为请求数组中的下标
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessStartResult {
+
+    private int index;
+    private String processInstanceId;
+    private boolean success;
+    private String message;
+
+    public static ProcessStartResult success(int index, String processInstanceId) {
+        return new ProcessStartResult(index, processInstanceId, true, null);
+    }
+
+    public static ProcessStartResult failure(int index, String message) {
+        return new ProcessStartResult(index, null, false, message);
+    }
+}
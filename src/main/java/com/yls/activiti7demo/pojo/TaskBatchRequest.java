@@ -0,0 +1,23 @@
+package com.yls.activiti7demo.pojo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量审批请求
+ */
+@Data
+public class TaskBatchRequest {
+
+    private String username;
+    private List<String> taskIds;
+    /**
+     * true为审批通过，false为驳回
+     */
+    private boolean approved = true;
+    /**
+     * 处理完成后返回的任务列表条数
+     */
+    private int size = 10;
+}
@@ -0,0 +1,16 @@
+package com.yls.activiti7demo.pojo;
+
+import lombok.Data;
+import org.activiti.api.task.model.Task;
+
+import java.util.List;
+
+/**
+ * 批量审批结果，附带处理完成后的当前用户任务列表
+ */
+@Data
+public class TaskBatchResponse {
+
+    private List<TaskBatchResult> results;
+    private List<Task> tasks;
+}
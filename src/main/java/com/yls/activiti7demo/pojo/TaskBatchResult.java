@@ -0,0 +1,26 @@
+package com.yls.activiti7demo.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量处理中单个任务的处理结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchResult {
+
+    private String taskId;
+    private boolean success;
+    private String message;
+
+    public static TaskBatchResult success(String taskId) {
+        return new TaskBatchResult(taskId, true, null);
+    }
+
+    public static TaskBatchResult failure(String taskId, String message) {
+        return new TaskBatchResult(taskId, false, message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.yls.activiti7demo.pojo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Date;
+
+/**
+ * 推送给客户端的任务变化
+ * <p>
+ * type为created/assigned时客户端更新本地任务（assignee不为空且不是自己时移除），
+ * 为completed/deleted时移除
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TaskDelta(String type, String taskId, String name, String processInstanceId,
+                        String processDefinitionId, String assignee, Date createTime) {
+
+    public static final String CREATED = "created";
+    public static final String ASSIGNED = "assigned";
+    public static final String COMPLETED = "completed";
+    public static final String DELETED = "deleted";
+}
@@ -0,0 +1,29 @@
+package com.yls.activiti7demo.repository;
+
+import com.yls.activiti7demo.entity.TaskInboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TaskInboxRepository extends JpaRepository<TaskInboxEntry, TaskInboxEntry.Key> {
+
+    /**
+     * 同一任务通过多个ownerKey匹配时只取其中ownerKey最小的一行，在分页之前去重
+     * <p>
+     * 外层按(OWNER_KEY_, CREATE_TIME_)索引取匹配的行，每一行再执行一次按TASK_ID_索引的相关子查询（每个任务的行数为
+     * 办理人、所有人和候选人个数），排序和分页在去重之后。代价随用户可见的行数线性增长，而不是单次索引查找
+     */
+    @Query("select e from TaskInboxEntry e where e.ownerKey in :ownerKeys"
+            + " and e.ownerKey = (select min(o.ownerKey) from TaskInboxEntry o where o.taskId = e.taskId and o.ownerKey in :ownerKeys)"
+            + " order by e.createTime desc, e.taskId desc")
+    List<TaskInboxEntry> findInbox(@Param("ownerKeys") Collection<String> ownerKeys, Pageable pageable);
+
+    @Modifying
+    @Query("delete from TaskInboxEntry e where e.taskId in :taskIds")
+    int deleteByTaskIds(@Param("taskIds") Collection<String> taskIds);
+}
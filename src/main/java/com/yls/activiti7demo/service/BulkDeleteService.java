@@ -0,0 +1,305 @@
+package com.yls.activiti7demo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.yls.activiti7demo.config.PerformanceProperties;
+import com.yls.activiti7demo.pojo.BulkDeleteJob;
+import com.yls.activiti7demo.pojo.BulkDeleteRequest;
+import com.yls.activiti7demo.pojo.JobStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 后台批量删除流程实例和部署
+ * <p>
+ * 按过滤条件从ACT_HI_PROCINST按(START_TIME_, ID_)游标分页取出匹配的顶层流程实例ID（子流程随父流程删除），
+ * 每页chunkSize个，只取任务开始前发起的流程实例；每页在一个事务中删除运行时数据和历史数据，
+ * 某页失败时整页回滚再逐个重试，失败的实例计入failedInstances。页之间暂停pauseMillis，避免长时间锁表。
+ * 按流程定义KEY删除部署时，部署中包含其他流程定义的拒绝执行，避免级联删除未匹配的流程定义。
+ * dryRun只统计数量。同一时间只执行一个删除任务。
+ */
+@Slf4j
+@Service
+public class BulkDeleteService {
+
+    private static final String DELETE_REASON = "bulk delete";
+
+    private final RuntimeService runtimeService;
+    private final HistoryService historyService;
+    private final RepositoryService repositoryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProcessDefinitionCache processDefinitionCache;
+    private final ProcessDiagramCache processDiagramCache;
+    private final ThreadPoolTaskExecutor executor;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    private final Cache<String, BulkDeleteJob> jobs;
+
+    public BulkDeleteService(RuntimeService runtimeService, HistoryService historyService,
+                             RepositoryService repositoryService, JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate, ProcessDefinitionCache processDefinitionCache,
+                             ProcessDiagramCache processDiagramCache, PerformanceProperties performanceProperties) {
+        PerformanceProperties.BulkDelete properties = performanceProperties.getBulkDelete();
+        this.runtimeService = runtimeService;
+        this.historyService = historyService;
+        this.repositoryService = repositoryService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.processDefinitionCache = processDefinitionCache;
+        this.processDiagramCache = processDiagramCache;
+        this.chunkSize = properties.getChunkSize();
+        this.pauseMillis = properties.getPauseMillis();
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(1);
+        this.executor.setMaxPoolSize(1);
+        this.executor.setQueueCapacity(properties.getQueueCapacity());
+        this.executor.setThreadNamePrefix("bulk-delete-");
+        this.executor.initialize();
+        long retentionNanos = properties.getJobRetention().toNanos();
+        // 任务结束（finish中重新放入）后才开始计算保留时间，排队和运行中的任务不会过期
+        this.jobs = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, BulkDeleteJob>() {
+                    @Override
+                    public long expireAfterCreate(String jobId, BulkDeleteJob job, long currentTime) {
+                        return Objects.isNull(job.getFinishTime()) ? Long.MAX_VALUE : retentionNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String jobId, BulkDeleteJob job, long currentTime, long currentDuration) {
+                        return expireAfterCreate(jobId, job, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String jobId, BulkDeleteJob job, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 提交删除任务；dryRun时同步统计数量并返回已完成的任务
+     */
+    public BulkDeleteJob submit(BulkDeleteRequest request) {
+        BulkDeleteJob job = new BulkDeleteJob(UUID.randomUUID().toString(), request);
+        jobs.put(job.getJobId(), job);
+        if (request.isDeleteDeployments() && (Objects.nonNull(request.getStartedBy())
+                || Objects.nonNull(request.getStartedAfter()) || Objects.nonNull(request.getStartedBefore()))) {
+            finish(job, JobStatus.FAILURE, "按发起人或时间过滤时不能删除部署，否则会级联删除未匹配的流程实例");
+            return job;
+        }
+        if (request.isDeleteDeployments()) {
+            List<String> shared = sharedDeploymentIds(request);
+            if (!shared.isEmpty()) {
+                finish(job, JobStatus.FAILURE, "部署" + shared + "中包含其他流程定义，删除部署会级联删除这些流程定义");
+                return job;
+            }
+        }
+        if (request.isDryRun()) {
+            job.setTotalInstances(countInstances(request, null));
+            job.setTotalDeployments(request.isDeleteDeployments() ? deploymentIds(request).size() : 0);
+            finish(job, JobStatus.SUCCESS, "dryRun，未删除");
+            return job;
+        }
+        try {
+            executor.execute(() -> run(job));
+        } catch (TaskRejectedException e) {
+            finish(job, JobStatus.FAILURE, "删除队列已满，请稍后重试");
+        }
+        return job;
+    }
+
+    public Optional<BulkDeleteJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId));
+    }
+
+    private void run(BulkDeleteJob job) {
+        job.setStatus(JobStatus.RUNNING);
+        BulkDeleteRequest request = job.getRequest();
+        try {
+            // 任务开始后发起的流程实例不在本次删除范围内
+            Date startedUntil = new Date();
+            job.setTotalInstances(countInstances(request, startedUntil));
+            log.info("批量删除任务:{}开始，匹配流程实例{}个", job.getJobId(), job.getTotalInstances());
+            Position after = null;
+            List<Position> page;
+            do {
+                page = findInstances(request, startedUntil, after);
+                if (page.isEmpty()) {
+                    break;
+                }
+                deleteChunk(job, page.stream().map(Position::id).collect(Collectors.toList()));
+                after = page.get(page.size() - 1);
+                pause();
+            } while (page.size() == chunkSize);
+            if (request.isDeleteDeployments()) {
+                List<String> deploymentIds = deploymentIds(request);
+                job.setTotalDeployments(deploymentIds.size());
+                for (String deploymentId : deploymentIds) {
+                    // 流程实例已删除，级联只清理剩余的少量数据，每个部署单独提交
+                    repositoryService.deleteDeployment(deploymentId, true);
+                    job.setDeletedDeployments(job.getDeletedDeployments() + 1);
+                }
+                processDiagramCache.evictAll();
+                processDefinitionCache.invalidateAll();
+            }
+            finish(job, job.getFailedInstances() == 0 ? JobStatus.SUCCESS : JobStatus.FAILURE,
+                    job.getFailedInstances() == 0 ? null : job.getFailedInstances() + "个流程实例删除失败");
+            log.info("批量删除任务:{}完成，删除流程实例{}个，失败{}个，删除部署{}个", job.getJobId(),
+                    job.getDeletedInstances(), job.getFailedInstances(), job.getDeletedDeployments());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, JobStatus.FAILURE, "删除任务被中断");
+        } catch (RuntimeException e) {
+            log.error("批量删除任务:{}异常", job.getJobId(), e);
+            finish(job, JobStatus.FAILURE, e.getMessage());
+        }
+    }
+
+    private void deleteChunk(BulkDeleteJob job, List<String> chunk) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> chunk.forEach(this::delete));
+            job.setDeletedInstances(job.getDeletedInstances() + chunk.size());
+        } catch (RuntimeException e) {
+            log.warn("批量删除流程实例失败，逐个重试，共{}个", chunk.size(), e);
+            for (String processInstanceId : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> delete(processInstanceId));
+                    job.setDeletedInstances(job.getDeletedInstances() + 1);
+                } catch (RuntimeException ex) {
+                    log.warn("删除流程实例失败，流程实例ID:{}", processInstanceId, ex);
+                    job.setFailedInstances(job.getFailedInstances() + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否仍在运行在事务内判断，取出ID之后结束的流程实例只删除历史数据
+     */
+    private void delete(String processInstanceId) {
+        if (runtimeService.createProcessInstanceQuery().processInstanceId(processInstanceId).count() > 0) {
+            runtimeService.deleteProcessInstance(processInstanceId, DELETE_REASON);
+        }
+        historyService.deleteHistoricProcessInstance(processInstanceId);
+    }
+
+    private void pause() throws InterruptedException {
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    private int countInstances(BulkDeleteRequest request, Date startedUntil) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*)").append(where(request, args));
+        if (Objects.nonNull(startedUntil)) {
+            sql.append(" AND P.START_TIME_ < ?");
+            args.add(startedUntil);
+        }
+        Integer count = jdbcTemplate.queryForObject(sql.toString(), Integer.class, args.toArray());
+        return Objects.isNull(count) ? 0 : count;
+    }
+
+    /**
+     * 游标分页：取after之后的chunkSize个流程实例，已删除和删除失败的实例都在游标之前，不会重复取出
+     */
+    private List<Position> findInstances(BulkDeleteRequest request, Date startedUntil, Position after) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT P.ID_, P.START_TIME_").append(where(request, args))
+                .append(" AND P.START_TIME_ < ?");
+        args.add(startedUntil);
+        if (Objects.nonNull(after)) {
+            sql.append(" AND (P.START_TIME_ > ? OR (P.START_TIME_ = ? AND P.ID_ > ?))");
+            args.add(after.startTime());
+            args.add(after.startTime());
+            args.add(after.id());
+        }
+        sql.append(" ORDER BY P.START_TIME_, P.ID_ LIMIT ").append(chunkSize);
+        return jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> new Position(rs.getString(1), rs.getTimestamp(2)), args.toArray());
+    }
+
+    private String where(BulkDeleteRequest request, List<Object> args) {
+        StringBuilder sql = new StringBuilder(" FROM ACT_HI_PROCINST P");
+        if (Objects.nonNull(request.getProcessDefinitionKey())) {
+            sql.append(" JOIN ACT_RE_PROCDEF D ON D.ID_ = P.PROC_DEF_ID_ AND D.KEY_ = ?");
+            args.add(request.getProcessDefinitionKey());
+        }
+        sql.append(" WHERE P.SUPER_PROCESS_INSTANCE_ID_ IS NULL");
+        if (Objects.nonNull(request.getStartedBy())) {
+            sql.append(" AND P.START_USER_ID_ = ?");
+            args.add(request.getStartedBy());
+        }
+        if (Objects.nonNull(request.getStartedAfter())) {
+            sql.append(" AND P.START_TIME_ >= ?");
+            args.add(request.getStartedAfter());
+        }
+        if (Objects.nonNull(request.getStartedBefore())) {
+            sql.append(" AND P.START_TIME_ < ?");
+            args.add(request.getStartedBefore());
+        }
+        return sql.toString();
+    }
+
+    private List<String> deploymentIds(BulkDeleteRequest request) {
+        if (Objects.isNull(request.getProcessDefinitionKey())) {
+            return repositoryService.createDeploymentQuery().list().stream()
+                    .map(Deployment::getId)
+                    .collect(Collectors.toList());
+        }
+        return repositoryService.createProcessDefinitionQuery()
+                .processDefinitionKey(request.getProcessDefinitionKey())
+                .list().stream()
+                .map(ProcessDefinition::getDeploymentId)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 按流程定义KEY删除部署时，同一部署中还包含其他KEY的流程定义的部署
+     */
+    private List<String> sharedDeploymentIds(BulkDeleteRequest request) {
+        if (Objects.isNull(request.getProcessDefinitionKey())) {
+            return Collections.emptyList();
+        }
+        return deploymentIds(request).stream()
+                .filter(deploymentId -> repositoryService.createProcessDefinitionQuery()
+                        .deploymentId(deploymentId)
+                        .list().stream()
+                        .anyMatch(definition -> !request.getProcessDefinitionKey().equals(definition.getKey())))
+                .collect(Collectors.toList());
+    }
+
+    private void finish(BulkDeleteJob job, JobStatus status, String message) {
+        job.setMessage(message);
+        job.setFinishTime(new Date());
+        job.setStatus(status);
+        jobs.put(job.getJobId(), job);
+    }
+
+    private record Position(String id, Timestamp startTime) {
+    }
+}
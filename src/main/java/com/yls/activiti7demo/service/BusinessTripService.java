@@ -0,0 +1,137 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.config.PerformanceProperties;
+import com.yls.activiti7demo.pojo.BusinessTrip;
+import com.yls.activiti7demo.pojo.ProcessStartResult;
+import com.yls.activiti7demo.service.ProcessDefinitionCache.ProcessDefinitionInfo;
+import com.yls.activiti7demo.util.SecurityUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * 批量发起出差申请流程
+ * <p>
+ * 流程定义从{@link ProcessDefinitionCache}中获取，每批请求只解析一次；流程按chunkSize分组，每组在一个事务中发起并完成申请人的填写审批单任务。
+ * 某组出现异常时整组回滚，再逐条单独重试，以便给出每条申请的处理结果。
+ * 事务内的计时先暂存，提交后才计入指标，回滚后重试的流程不会重复计数。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BusinessTripService {
+
+    private final ProcessDefinitionCache processDefinitionCache;
+    private final RuntimeService runtimeService;
+    private final TaskService taskService;
+    private final SecurityUtil securityUtil;
+    private final TransactionTemplate transactionTemplate;
+    private final WorkflowMetrics workflowMetrics;
+    private final PerformanceProperties performanceProperties;
+
+    public List<ProcessStartResult> startBatch(List<BusinessTrip> businessTrips) {
+        Map<String, ProcessDefinitionInfo> processDefinitions = new HashMap<>();
+        for (BusinessTrip businessTrip : businessTrips) {
+            String processDefinitionId = businessTrip.getProcessDefinitionId();
+            if (Objects.nonNull(processDefinitionId) && !processDefinitions.containsKey(processDefinitionId)) {
+                processDefinitions.put(processDefinitionId,
+                        processDefinitionCache.findLatestById(processDefinitionId).orElse(null));
+            }
+        }
+
+        int chunkSize = performanceProperties.getBatch().getStartChunkSize();
+        List<ProcessStartResult> results = new ArrayList<>(businessTrips.size());
+        for (int from = 0; from < businessTrips.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, businessTrips.size());
+            try {
+                results.addAll(startCommitted(businessTrips, from, to, processDefinitions));
+            } catch (RuntimeException e) {
+                log.warn("批量发起流程失败，逐条重试，下标:{}-{}", from, to - 1, e);
+                for (int i = from; i < to; i++) {
+                    try {
+                        results.addAll(startCommitted(businessTrips, i, i + 1, processDefinitions));
+                    } catch (RuntimeException ex) {
+                        log.warn("发起流程失败，下标:{}", i, ex);
+                        results.add(ProcessStartResult.failure(i, ex.getMessage()));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 在一个事务中发起[from, to)的流程，提交成功后再记录计时
+     */
+    private List<ProcessStartResult> startCommitted(List<BusinessTrip> businessTrips, int from, int to,
+                                                    Map<String, ProcessDefinitionInfo> processDefinitions) {
+        List<Timing> timings = new ArrayList<>();
+        List<ProcessStartResult> results = transactionTemplate.execute(
+                status -> startChunk(businessTrips, from, to, processDefinitions, timings));
+        timings.forEach(timing -> workflowMetrics.record(timing.name(), timing.processDefinitionKey(),
+                WorkflowMetrics.SUCCESS, timing.nanos()));
+        return results;
+    }
+
+    private List<ProcessStartResult> startChunk(List<BusinessTrip> businessTrips, int from, int to,
+                                                Map<String, ProcessDefinitionInfo> processDefinitions,
+                                                List<Timing> timings) {
+        List<ProcessStartResult> results = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            BusinessTrip businessTrip = businessTrips.get(i);
+            ProcessDefinitionInfo processDefinition = processDefinitions.get(businessTrip.getProcessDefinitionId());
+            if (Objects.isNull(processDefinition)) {
+                results.add(ProcessStartResult.failure(i, "流程定义不存在:" + businessTrip.getProcessDefinitionId()));
+                continue;
+            }
+            String user = businessTrip.getUser();
+            SecurityUtil.RunAs runAs;
+            try {
+                runAs = securityUtil.runAs(user);
+            } catch (RuntimeException e) {
+                results.add(ProcessStartResult.failure(i, "申请人不存在:" + user));
+                continue;
+            }
+            // 申请人作为流程发起人
+            try (runAs) {
+                ProcessInstance processInstance = timed(timings, WorkflowMetrics.PROCESS_START, processDefinition.key(),
+                        () -> runtimeService.createProcessInstanceBuilder()
+                                .processDefinitionId(processDefinition.id())
+                                .name(user + "的出差申请流程")
+                                .variable("businessTrip", businessTrip)
+                                .start());
+                // 完成当前流程实例中填写审批单的任务，流程变量已在发起时设置
+                Task userTask = taskService.createTaskQuery()
+                        .processInstanceId(processInstance.getId())
+                        .taskAssignee(user)
+                        .singleResult();
+                if (Objects.nonNull(userTask)) {
+                    timed(timings, WorkflowMetrics.TASK_COMPLETE, processDefinition.key(), () -> {
+                        taskService.complete(userTask.getId());
+                        return null;
+                    });
+                }
+                results.add(ProcessStartResult.success(i, processInstance.getId()));
+            }
+        }
+        return results;
+    }
+
+    private static <T> T timed(List<Timing> timings, String name, String processDefinitionKey, Supplier<T> action) {
+        long start = System.nanoTime();
+        T result = action.get();
+        timings.add(new Timing(name, processDefinitionKey, System.nanoTime() - start));
+        return result;
+    }
+
+    private record Timing(String name, String processDefinitionKey, long nanos) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.pojo.CursorPage;
+import com.yls.activiti7demo.util.PageUtil;
+import lombok.RequiredArgsConstructor;
+import org.activiti.api.runtime.shared.identity.UserGroupManager;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.history.HistoricTaskInstance;
+import org.activiti.engine.history.NativeHistoricTaskInstanceQuery;
+import org.activiti.engine.task.NativeTaskQuery;
+import org.activiti.engine.task.Task;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 游标（keyset）分页查询
+ * <p>
+ * 按创建时间、ID排序，下一页从上一页最后一条记录之后开始查询，不使用OFFSET，
+ * 第N页与第1页的查询代价相同。
+ */
+@Service
+@RequiredArgsConstructor
+public class KeysetQueryService {
+
+    private final TaskService taskService;
+    private final HistoryService historyService;
+    private final UserGroupManager userGroupManager;
+
+    /**
+     * 用户待办任务：办理人或所有人为当前用户，或未被认领且当前用户/用户组为候选人，与taskRuntime.tasks()范围一致
+     * <p>
+     * 候选人条件用EXISTS子查询，不连接身份关联表，无需DISTINCT去重，可以按(CREATE_TIME_, ID_)索引顺序扫描并在取满一页后停止
+     */
+    public CursorPage<Task> userTasks(String username, String cursor, int size) {
+        List<String> groups = userGroupManager.getUserGroups(username);
+        StringBuilder sql = new StringBuilder("SELECT RES.* FROM ACT_RU_TASK RES")
+                .append(" WHERE (RES.ASSIGNEE_ = #{userId} OR RES.OWNER_ = #{userId} OR (RES.ASSIGNEE_ IS NULL AND EXISTS (")
+                .append("SELECT 1 FROM ACT_RU_IDENTITYLINK I WHERE I.TASK_ID_ = RES.ID_ AND I.TYPE_ = 'candidate'")
+                .append(" AND (I.USER_ID_ = #{userId}");
+        NativeTaskQuery query = taskService.createNativeTaskQuery().parameter("userId", username);
+        if (!groups.isEmpty()) {
+            sql.append(" OR I.GROUP_ID_ IN (");
+            for (int i = 0; i < groups.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append("#{group").append(i).append("}");
+                query.parameter("group" + i, groups.get(i));
+            }
+            sql.append(")");
+        }
+        sql.append("))))");
+        if (Objects.nonNull(cursor)) {
+            PageUtil.Cursor position = PageUtil.decodeCursor(cursor);
+            sql.append(" AND (RES.CREATE_TIME_ > #{time} OR (RES.CREATE_TIME_ = #{time} AND RES.ID_ > #{id}))");
+            query.parameter("time", position.time()).parameter("id", position.id());
+        }
+        sql.append(" ORDER BY RES.CREATE_TIME_ ASC, RES.ID_ ASC");
+        List<Task> tasks = query.sql(sql.toString()).listPage(0, size);
+        String nextCursor = tasks.size() < size ? null
+                : PageUtil.encodeCursor(tasks.get(size - 1).getCreateTime(), tasks.get(size - 1).getId());
+        return new CursorPage<>(tasks, nextCursor);
+    }
+
+    /**
+     * 流程实例的历史任务，按开始时间排序
+     */
+    public CursorPage<HistoricTaskInstance> historicTasks(String processInstanceId, String cursor, int size) {
+        StringBuilder sql = new StringBuilder("SELECT RES.* FROM ACT_HI_TASKINST RES WHERE RES.PROC_INST_ID_ = #{processInstanceId}");
+        NativeHistoricTaskInstanceQuery query = historyService.createNativeHistoricTaskInstanceQuery()
+                .parameter("processInstanceId", processInstanceId);
+        if (Objects.nonNull(cursor)) {
+            PageUtil.Cursor position = PageUtil.decodeCursor(cursor);
+            sql.append(" AND (RES.START_TIME_ > #{time} OR (RES.START_TIME_ = #{time} AND RES.ID_ > #{id}))");
+            query.parameter("time", position.time()).parameter("id", position.id());
+        }
+        sql.append(" ORDER BY RES.START_TIME_ ASC, RES.ID_ ASC");
+        List<HistoricTaskInstance> historicTasks = query.sql(sql.toString()).listPage(0, size);
+        String nextCursor = historicTasks.size() < size ? null
+                : PageUtil.encodeCursor(historicTasks.get(size - 1).getStartTime(), historicTasks.get(size - 1).getId());
+        return new CursorPage<>(historicTasks, nextCursor);
+    }
+}
@@ -0,0 +1,220 @@
+package com.yls.activiti7demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yls.activiti7demo.constant.ModelDataJsonConstants;
+import com.yls.activiti7demo.pojo.DeploymentJob;
+import com.yls.activiti7demo.pojo.JobStatus;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.bpmn.converter.BpmnXMLConverter;
+import org.activiti.bpmn.model.BpmnModel;
+import org.activiti.editor.language.json.converter.BpmnJsonConverter;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.repository.Model;
+import org.activiti.validation.ProcessValidator;
+import org.activiti.validation.ProcessValidatorFactory;
+import org.activiti.validation.ValidationError;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 模型异步部署
+ * <p>
+ * 发布请求只读取一次模型源数据并返回任务ID，JSON转换、校验和部署在有界线程池中执行。
+ * 同一模型相同源数据的发布请求在执行完成前合并为同一个任务。
+ * 模型源数据或生成的BPMN与上次部署相同时不重复部署，直接沿用已有部署。
+ */
+@Slf4j
+@Service
+public class ModelDeploymentService {
+
+    private static final String REUSED_MESSAGE = "模型未变化，沿用已有部署";
+
+    private final RepositoryService repositoryService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor executor;
+    private final WorkflowMetrics workflowMetrics;
+    private final ProcessValidator processValidator = new ProcessValidatorFactory().createDefaultProcessValidator();
+
+    /**
+     * 未完成的任务，键为模型ID和源数据摘要
+     */
+    private final Map<String, DeploymentJob> inFlight = new ConcurrentHashMap<>();
+
+    private final Cache<String, DeploymentJob> jobs;
+
+    public ModelDeploymentService(RepositoryService repositoryService, ObjectMapper objectMapper,
+                                  TransactionTemplate transactionTemplate, WorkflowMetrics workflowMetrics,
+                                  @Value("${activiti-demo.deployment.pool-size:2}") int poolSize,
+                                  @Value("${activiti-demo.deployment.queue-capacity:50}") int queueCapacity,
+                                  @Value("${activiti-demo.deployment.job-retention-minutes:60}") long jobRetentionMinutes) {
+        this.repositoryService = repositoryService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.workflowMetrics = workflowMetrics;
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(poolSize);
+        this.executor.setMaxPoolSize(poolSize);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("model-deploy-");
+        this.executor.initialize();
+        this.jobs = Caffeine.newBuilder().expireAfterWrite(jobRetentionMinutes, TimeUnit.MINUTES).build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 提交模型部署任务，模型不存在或源数据为空时返回失败状态的任务
+     */
+    public DeploymentJob submit(String modelId) {
+        Model model = repositoryService.getModel(modelId);
+        byte[] editorSource = Objects.isNull(model) ? null : repositoryService.getModelEditorSource(model.getId());
+        if (Objects.isNull(editorSource)) {
+            log.info("部署ID:{}的模型数据为空，请先设计流程并成功保存，再进行发布", modelId);
+            DeploymentJob job = newJob(modelId);
+            finish(job, JobStatus.FAILURE, null, "模型不存在或模型数据为空");
+            return job;
+        }
+        String sourceHash = DigestUtils.md5DigestAsHex(editorSource);
+        String deployedId = model.getDeploymentId();
+        if (sourceHash.equals(readMetaInfo(model).path(ModelDataJsonConstants.MODEL_SOURCE_HASH).asText(null))
+                && Objects.nonNull(deployedId)
+                && repositoryService.createDeploymentQuery().deploymentId(deployedId).count() > 0) {
+            DeploymentJob job = newJob(modelId);
+            finish(job, JobStatus.SUCCESS, deployedId, REUSED_MESSAGE);
+            return job;
+        }
+        String key = modelId + ":" + sourceHash;
+        DeploymentJob existing = inFlight.get(key);
+        if (Objects.nonNull(existing)) {
+            log.info("模型:{}已有相同内容的部署任务:{}，合并请求", modelId, existing.getJobId());
+            return existing;
+        }
+        DeploymentJob job = newJob(modelId);
+        DeploymentJob raced = inFlight.putIfAbsent(key, job);
+        if (Objects.nonNull(raced)) {
+            return raced;
+        }
+        try {
+            executor.execute(() -> run(job, key, model, editorSource, sourceHash));
+        } catch (TaskRejectedException e) {
+            inFlight.remove(key);
+            finish(job, JobStatus.FAILURE, null, "部署队列已满，请稍后重试");
+        }
+        return job;
+    }
+
+    public Optional<DeploymentJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId));
+    }
+
+    private DeploymentJob newJob(String modelId) {
+        DeploymentJob job = new DeploymentJob(UUID.randomUUID().toString(), modelId);
+        jobs.put(job.getJobId(), job);
+        return job;
+    }
+
+    private void run(DeploymentJob job, String key, Model model, byte[] editorSource, String sourceHash) {
+        job.setStatus(JobStatus.RUNNING);
+        Timer.Sample sample = workflowMetrics.start();
+        String outcome = WorkflowMetrics.FAILURE;
+        try {
+            DeployResult result = deploy(model, editorSource, sourceHash);
+            finish(job, JobStatus.SUCCESS, result.deploymentId(), result.reused() ? REUSED_MESSAGE : null);
+            outcome = result.reused() ? WorkflowMetrics.UNCHANGED : WorkflowMetrics.SUCCESS;
+            log.info("模型:{}部署完成，部署ID:{}，沿用已有部署:{}", model.getId(), result.deploymentId(), result.reused());
+        } catch (Exception e) {
+            log.error("部署modelId:{}模型服务异常", model.getId(), e);
+            finish(job, JobStatus.FAILURE, null, e.getMessage());
+        } finally {
+            workflowMetrics.stop(sample, WorkflowMetrics.DEPLOYMENT, model.getKey(), outcome);
+            inFlight.remove(key);
+        }
+    }
+
+    private void finish(DeploymentJob job, JobStatus status, String deploymentId, String message) {
+        job.setDeploymentId(deploymentId);
+        job.setMessage(message);
+        job.setFinishTime(new Date());
+        job.setStatus(status);
+    }
+
+    private DeployResult deploy(Model model, byte[] editorSource, String sourceHash) throws IOException {
+        JsonNode modelNode = objectMapper.readTree(editorSource);
+        BpmnModel bpmnModel = new BpmnJsonConverter().convertToBpmnModel(modelNode);
+        if (bpmnModel.getProcesses().isEmpty()) {
+            throw new ActivitiException("模型中没有流程定义");
+        }
+        List<ValidationError> errors = processValidator.validate(bpmnModel).stream()
+                .filter(error -> !error.isWarning())
+                .collect(Collectors.toList());
+        if (!errors.isEmpty()) {
+            throw new ActivitiException("模型校验失败:" + errors);
+        }
+        // 以生成的BPMN内容摘要判断模型是否变化，未变化时不重复部署
+        byte[] bpmnBytes = new BpmnXMLConverter().convertToXML(bpmnModel);
+        String bpmnHash = DigestUtils.md5DigestAsHex(bpmnBytes);
+        return transactionTemplate.execute(status -> {
+            Model modelData = repositoryService.getModel(model.getId());
+            ObjectNode metaInfo = readMetaInfo(modelData);
+            String deployedId = modelData.getDeploymentId();
+            if (bpmnHash.equals(metaInfo.path(ModelDataJsonConstants.MODEL_BPMN_HASH).asText(null))
+                    && Objects.nonNull(deployedId)
+                    && repositoryService.createDeploymentQuery().deploymentId(deployedId).count() > 0) {
+                metaInfo.put(ModelDataJsonConstants.MODEL_SOURCE_HASH, sourceHash);
+                modelData.setMetaInfo(metaInfo.toString());
+                repositoryService.saveModel(modelData);
+                return new DeployResult(deployedId, true);
+            }
+            Deployment deployment = repositoryService.createDeployment()
+                    .name(modelData.getName())
+                    .addBytes(modelData.getKey() + ".bpmn20.xml", bpmnBytes)
+                    .deploy();
+            metaInfo.put(ModelDataJsonConstants.MODEL_BPMN_HASH, bpmnHash);
+            metaInfo.put(ModelDataJsonConstants.MODEL_SOURCE_HASH, sourceHash);
+            modelData.setMetaInfo(metaInfo.toString());
+            modelData.setDeploymentId(deployment.getId());
+            repositoryService.saveModel(modelData);
+            return new DeployResult(deployment.getId(), false);
+        });
+    }
+
+    private ObjectNode readMetaInfo(Model model) {
+        try {
+            if (StringUtils.hasText(model.getMetaInfo())) {
+                return (ObjectNode) objectMapper.readTree(model.getMetaInfo());
+            }
+        } catch (IOException e) {
+            log.warn("模型:{}的metaInfo格式错误，重新生成", model.getId(), e);
+        }
+        return objectMapper.createObjectNode();
+    }
+
+    /**
+     * 部署结果，reused为true表示模型未变化，沿用了已有部署
+     */
+    private record DeployResult(String deploymentId, boolean reused) {
+    }
+}
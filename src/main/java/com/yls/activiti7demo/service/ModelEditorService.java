@@ -0,0 +1,219 @@
+package com.yls.activiti7demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.flipkart.zjsonpatch.JsonPatch;
+import com.yls.activiti7demo.constant.ModelDataJsonConstants;
+import com.yls.activiti7demo.pojo.ModelPatchRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.ActivitiObjectNotFoundException;
+import org.activiti.engine.ActivitiOptimisticLockingException;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.impl.persistence.entity.ModelEntity;
+import org.activiti.engine.repository.Model;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 模型编辑器数据读写
+ * <p>
+ * 编辑器源数据版本记录在metaInfo的editorRevision中，只有完整保存和增量保存使其递增，
+ * 发布模型、写入缩略图等其他对模型行的更新不影响编辑器版本。
+ * 增量保存只上传JSON Patch，基于的版本与当前版本不一致时拒绝，由客户端改为完整保存；
+ * 并发保存由模型行REV_的乐观锁保证只有一个成功。编辑器源数据仍整体写入ACT_GE_BYTEARRAY，增量保存减少的是请求体积。
+ * 编辑器打开模型的响应按模型ID缓存序列化后的字节，命中条件为模型行REV_一致，保存时失效。
+ */
+@Slf4j
+@Service
+public class ModelEditorService {
+
+    private final RepositoryService repositoryService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Cache<String, EditorJson> editorJsonCache;
+
+    public ModelEditorService(RepositoryService repositoryService, ObjectMapper objectMapper,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${activiti-demo.editor-cache.max-bytes:33554432}") long maxBytes) {
+        this.repositoryService = repositoryService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.editorJsonCache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String modelId, EditorJson editorJson) -> editorJson.bytes().length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 编辑器打开模型时的数据：metaInfo、模型ID、版本和编辑器源数据，模型不存在时返回null
+     * <p>
+     * 只查询模型行比较版本，版本未变化时直接返回缓存的字节
+     */
+    public byte[] editorJson(String modelId) {
+        Model model = repositoryService.getModel(modelId);
+        if (Objects.isNull(model)) {
+            editorJsonCache.invalidate(modelId);
+            return null;
+        }
+        int revision = rowRevisionOf(model);
+        EditorJson cached = editorJsonCache.getIfPresent(modelId);
+        if (Objects.nonNull(cached) && cached.revision() == revision) {
+            return cached.bytes();
+        }
+        byte[] bytes = writeBytes(assembleEditorJson(model));
+        editorJsonCache.put(modelId, new EditorJson(revision, bytes));
+        return bytes;
+    }
+
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = editorJsonCache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", editorJsonCache.estimatedSize());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    private ObjectNode assembleEditorJson(Model model) {
+        try {
+            ObjectNode modelNode;
+            if (StringUtils.hasText(model.getMetaInfo())) {
+                modelNode = (ObjectNode) objectMapper.readTree(model.getMetaInfo());
+            } else {
+                modelNode = objectMapper.createObjectNode();
+                modelNode.put(ModelDataJsonConstants.MODEL_NAME, model.getName());
+            }
+            modelNode.put(ModelDataJsonConstants.MODEL_ID, model.getId());
+            modelNode.put(ModelDataJsonConstants.MODEL_EDITOR_REVISION, editorRevisionOf(readMetaInfo(model)));
+            modelNode.set("model", objectMapper.readTree(repositoryService.getModelEditorSource(model.getId())));
+            return modelNode;
+        } catch (IOException e) {
+            throw new ActivitiException("Error creating model JSON", e);
+        }
+    }
+
+    /**
+     * 完整保存，返回保存后的版本
+     */
+    public int save(String modelId, String name, String description, String jsonXml) {
+        editorJsonCache.invalidate(modelId);
+        return transactionTemplate.execute(status -> {
+            Model model = requireModel(modelId);
+            ObjectNode modelJson = readMetaInfo(model);
+            int revision = editorRevisionOf(modelJson) + 1;
+            modelJson.put(ModelDataJsonConstants.MODEL_NAME, name);
+            modelJson.put(ModelDataJsonConstants.MODEL_DESCRIPTION, description);
+            modelJson.put(ModelDataJsonConstants.MODEL_EDITOR_REVISION, revision);
+            model.setMetaInfo(modelJson.toString());
+            model.setName(name);
+            repositoryService.saveModel(model);
+            repositoryService.addModelEditorSource(model.getId(), jsonXml.getBytes(StandardCharsets.UTF_8));
+            return revision;
+        });
+    }
+
+    /**
+     * 增量保存，在服务端将JSON Patch应用到当前编辑器源数据
+     * <p>
+     * 请求版本与当前版本不一致，或并发保存导致乐观锁失败时返回未保存的结果和当前版本
+     */
+    public SaveResult patch(String modelId, ModelPatchRequest request) {
+        editorJsonCache.invalidate(modelId);
+        try {
+            return transactionTemplate.execute(status -> {
+                Model model = requireModel(modelId);
+                ObjectNode modelJson = readMetaInfo(model);
+                int revision = editorRevisionOf(modelJson);
+                if (revision != request.getRevision()) {
+                    return new SaveResult(false, revision);
+                }
+                JsonNode source = readTree(repositoryService.getModelEditorSource(modelId));
+                JsonNode patched = JsonPatch.apply(request.getPatch(), source);
+                if (StringUtils.hasText(request.getName())) {
+                    modelJson.put(ModelDataJsonConstants.MODEL_NAME, request.getName());
+                    model.setName(request.getName());
+                }
+                if (Objects.nonNull(request.getDescription())) {
+                    modelJson.put(ModelDataJsonConstants.MODEL_DESCRIPTION, request.getDescription());
+                }
+                modelJson.put(ModelDataJsonConstants.MODEL_EDITOR_REVISION, revision + 1);
+                model.setMetaInfo(modelJson.toString());
+                // 更新模型行记录新的编辑器版本，REV_条件保证并发保存只有一个成功
+                repositoryService.saveModel(model);
+                repositoryService.addModelEditorSource(modelId, writeBytes(patched));
+                return new SaveResult(true, revision + 1);
+            });
+        } catch (ActivitiOptimisticLockingException e) {
+            log.info("模型:{}增量保存时版本冲突", modelId);
+            return new SaveResult(false, editorRevisionOf(readMetaInfo(requireModel(modelId))));
+        }
+    }
+
+    private Model requireModel(String modelId) {
+        Model model = repositoryService.getModel(modelId);
+        if (Objects.isNull(model)) {
+            throw new ActivitiObjectNotFoundException("模型不存在:" + modelId, Model.class);
+        }
+        return model;
+    }
+
+    private int rowRevisionOf(Model model) {
+        return ((ModelEntity) model).getRevision();
+    }
+
+    private int editorRevisionOf(ObjectNode metaInfo) {
+        return metaInfo.path(ModelDataJsonConstants.MODEL_EDITOR_REVISION).asInt(0);
+    }
+
+    private ObjectNode readMetaInfo(Model model) {
+        if (!StringUtils.hasText(model.getMetaInfo())) {
+            return objectMapper.createObjectNode();
+        }
+        return (ObjectNode) readTree(model.getMetaInfo().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private JsonNode readTree(byte[] bytes) {
+        try {
+            return Objects.isNull(bytes) ? objectMapper.createObjectNode() : objectMapper.readTree(bytes);
+        } catch (IOException e) {
+            throw new ActivitiException("模型数据格式错误", e);
+        }
+    }
+
+    private byte[] writeBytes(JsonNode node) {
+        try {
+            return objectMapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new ActivitiException("模型数据序列化失败", e);
+        }
+    }
+
+    /**
+     * 缓存的编辑器响应，revision为生成时模型行的REV_
+     */
+    private record EditorJson(int revision, byte[] bytes) {
+    }
+
+    /**
+     * 保存结果，saved为false表示版本冲突未保存，revision为服务端当前版本
+     */
+    public record SaveResult(boolean saved, int revision) {
+    }
+}
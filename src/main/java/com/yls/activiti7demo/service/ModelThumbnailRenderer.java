@@ -0,0 +1,110 @@
+package com.yls.activiti7demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.RepositoryService;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型缩略图后台渲染
+ * <p>
+ * 保存模型时只提交SVG，由单个后台线程转为PNG写入模型的editorSourceExtra。
+ * 同一模型在防抖时间内多次提交只渲染最后一次的SVG；单线程渲染，PNGTranscoder实例可以复用。
+ */
+@Slf4j
+@Service
+public class ModelThumbnailRenderer {
+
+    private final RepositoryService repositoryService;
+    private final long debounceMillis;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("model-thumbnail-"));
+    private final PNGTranscoder transcoder = new PNGTranscoder();
+
+    /**
+     * 等待渲染的SVG，每个模型只保留最新的一份
+     */
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong renderedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong totalRenderNanos = new AtomicLong();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+
+    public ModelThumbnailRenderer(RepositoryService repositoryService,
+                                  @Value("${activiti-demo.thumbnail.debounce-millis:2000}") long debounceMillis) {
+        this.repositoryService = repositoryService;
+        this.debounceMillis = debounceMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * 提交模型缩略图渲染，覆盖该模型尚未渲染的SVG
+     */
+    public void submit(String modelId, String svg) {
+        submittedCount.incrementAndGet();
+        if (pending.put(modelId, svg) == null) {
+            scheduler.schedule(() -> render(modelId), debounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int queueDepth() {
+        return pending.size();
+    }
+
+    public Map<String, Object> stats() {
+        long rendered = renderedCount.get();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("queueDepth", queueDepth());
+        map.put("submittedCount", submittedCount.get());
+        map.put("renderedCount", rendered);
+        map.put("failedCount", failedCount.get());
+        map.put("averageRenderMillis", rendered == 0 ? 0D : totalRenderNanos.get() / 1_000_000D / rendered);
+        map.put("maxRenderMillis", maxRenderNanos.get() / 1_000_000D);
+        return map;
+    }
+
+    private void render(String modelId) {
+        String svg = pending.remove(modelId);
+        if (svg == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            transcoder.transcode(new TranscoderInput(new StringReader(svg)), new TranscoderOutput(outStream));
+            if (repositoryService.getModel(modelId) == null) {
+                log.info("模型:{}已删除，丢弃缩略图", modelId);
+                return;
+            }
+            repositoryService.addModelEditorSourceExtra(modelId, outStream.toByteArray());
+            long elapsed = System.nanoTime() - start;
+            renderedCount.incrementAndGet();
+            totalRenderNanos.addAndGet(elapsed);
+            maxRenderNanos.accumulateAndGet(elapsed, Math::max);
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            log.error("模型:{}缩略图渲染失败", modelId, e);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.yls.activiti7demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yls.activiti7demo.pojo.ArchivedProcessInstance;
+import com.yls.activiti7demo.pojo.HistoricTaskView;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.HistoryService;
+import org.activiti.engine.ManagementService;
+import org.activiti.engine.history.*;
+import org.activiti.engine.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 已结束流程实例的归档和清理
+ * <p>
+ * 定时把结束时间早于保留期限的流程实例（含历史任务、活动和变量）按批导出为gzip压缩的JSON Lines文件，
+ * 文件落盘（fsync后改名）并登记索引后再删除这一批的历史数据。每批之间暂停一段时间，避免长时间占用数据库。
+ * 每批的历史任务、活动和变量各用一次IN查询取出。索引按流程实例ID的哈希分为INDEX_SHARDS个文件，查询时只读一个分片。
+ * 导出后删除前中断时，下次运行会重复导出这些实例，查询归档时以索引中最后一次登记为准。
+ */
+@Slf4j
+@Service
+public class ProcessArchiveService {
+
+    private static final String FILE_PREFIX = "process-instances-";
+    private static final String FILE_SUFFIX = ".jsonl.gz";
+    /**
+     * 分片前的单一索引文件，仍可读取
+     */
+    private static final String LEGACY_INDEX_FILE = "index.tsv";
+    private static final int INDEX_SHARDS = 64;
+
+    private final HistoryService historyService;
+    private final ManagementService managementService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final boolean enabled;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long pauseMillis;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastResult;
+
+    public ProcessArchiveService(HistoryService historyService, ManagementService managementService, ObjectMapper objectMapper,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${activiti-demo.archive.directory:archive}") String directory,
+                                 @Value("${activiti-demo.archive.enabled:false}") boolean enabled,
+                                 @Value("${activiti-demo.archive.retention-days:90}") long retentionDays,
+                                 @Value("${activiti-demo.archive.batch-size:100}") int batchSize,
+                                 @Value("${activiti-demo.archive.max-batches-per-run:100}") int maxBatchesPerRun,
+                                 @Value("${activiti-demo.archive.pause-millis:500}") long pauseMillis) {
+        this.historyService = historyService;
+        this.managementService = managementService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.directory = Paths.get(directory);
+        this.enabled = enabled;
+        this.retention = Duration.ofDays(retentionDays);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pauseMillis = pauseMillis;
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(1);
+        this.executor.setMaxPoolSize(1);
+        this.executor.setQueueCapacity(0);
+        this.executor.setThreadNamePrefix("process-archive-");
+        this.executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Scheduled(cron = "${activiti-demo.archive.cron:0 0 3 * * ?}")
+    public void scheduledArchive() {
+        if (enabled && !submit()) {
+            log.info("上一次归档尚未结束，跳过本次归档");
+        }
+    }
+
+    /**
+     * 提交一次归档，归档可能持续数分钟，在单独的线程中执行，不占用调度线程和请求线程；
+     * 已有归档在运行时返回false
+     */
+    public boolean submit() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            executor.execute(this::archive);
+            return true;
+        } catch (TaskRejectedException e) {
+            running.set(false);
+            return false;
+        }
+    }
+
+    /**
+     * 是否正在归档，以及最近一次归档的结果
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("lastResult", lastResult);
+        return status;
+    }
+
+    /**
+     * 归档并删除保留期限之前结束的流程实例
+     */
+    private void archive() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Date cutoff = new Date(System.currentTimeMillis() - retention.toMillis());
+        int archived = 0;
+        List<String> files = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<HistoricProcessInstance> processInstances = historyService.createHistoricProcessInstanceQuery()
+                        .finished()
+                        .finishedBefore(cutoff)
+                        .orderByProcessInstanceEndTime().asc()
+                        .listPage(0, batchSize);
+                if (processInstances.isEmpty()) {
+                    break;
+                }
+                files.add(export(processInstances).getFileName().toString());
+                List<String> ids = processInstances.stream().map(HistoricProcessInstance::getId).collect(Collectors.toList());
+                transactionTemplate.executeWithoutResult(status -> ids.forEach(historyService::deleteHistoricProcessInstance));
+                archived += ids.size();
+                if (processInstances.size() < batchSize) {
+                    break;
+                }
+                Thread.sleep(pauseMillis);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("归档流程实例失败，本次已归档{}个", archived, e);
+            result.put("error", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            log.info("归档{}之前结束的流程实例{}个，文件{}个", cutoff, archived, files.size());
+            result.put("cutoff", cutoff);
+            result.put("archived", archived);
+            result.put("files", files);
+            result.put("finishTime", new Date());
+            lastResult = result;
+            running.set(false);
+        }
+    }
+
+    /**
+     * 按流程实例ID读取归档，先查该ID所在的索引分片定位文件，只解压这一个文件
+     */
+    public Optional<ArchivedProcessInstance> find(String processInstanceId) throws IOException {
+        String fileName = lookup(indexOf(processInstanceId), processInstanceId);
+        if (Objects.isNull(fileName)) {
+            fileName = lookup(directory.resolve(LEGACY_INDEX_FILE), processInstanceId);
+        }
+        if (Objects.isNull(fileName)) {
+            return Optional.empty();
+        }
+        // 每行以id字段开头
+        String linePrefix = "{\"id\":" + objectMapper.writeValueAsString(processInstanceId);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(directory.resolve(fileName))), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(linePrefix)) {
+                    return Optional.of(objectMapper.readValue(line, ArchivedProcessInstance.class));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 归档文件列表，按文件名（导出时间）排序
+     */
+    public List<Map<String, Object>> files() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            List<Map<String, Object>> files = new ArrayList<>();
+            for (Path path : paths.filter(p -> p.getFileName().toString().endsWith(FILE_SUFFIX)).sorted().collect(Collectors.toList())) {
+                Map<String, Object> file = new LinkedHashMap<>();
+                file.put("name", path.getFileName().toString());
+                file.put("size", Files.size(path));
+                files.add(file);
+            }
+            return files;
+        }
+    }
+
+    private String lookup(Path index, String processInstanceId) throws IOException {
+        if (!Files.exists(index)) {
+            return null;
+        }
+        String prefix = processInstanceId + "\t";
+        String fileName = null;
+        try (Stream<String> lines = Files.lines(index, StandardCharsets.UTF_8)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (line.startsWith(prefix)) {
+                    fileName = line.substring(prefix.length());
+                }
+            }
+        }
+        return fileName;
+    }
+
+    private Path indexOf(String processInstanceId) {
+        return directory.resolve(String.format("index-%02d.tsv", Math.floorMod(processInstanceId.hashCode(), INDEX_SHARDS)));
+    }
+
+    private Path export(List<HistoricProcessInstance> processInstances) throws IOException {
+        List<ArchivedProcessInstance> archives = archiveOf(processInstances);
+        String name = FILE_PREFIX + new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date()) + FILE_SUFFIX;
+        Path target = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(file))) {
+            for (ArchivedProcessInstance archive : archives) {
+                gzip.write(objectMapper.writeValueAsBytes(archive));
+                gzip.write('\n');
+            }
+            gzip.finish();
+            gzip.flush();
+            file.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        Map<Path, StringBuilder> shards = new TreeMap<>();
+        processInstances.forEach(processInstance -> shards.computeIfAbsent(indexOf(processInstance.getId()), path -> new StringBuilder())
+                .append(processInstance.getId()).append('\t').append(name).append('\n'));
+        for (Map.Entry<Path, StringBuilder> shard : shards.entrySet()) {
+            try (FileChannel channel = FileChannel.open(shard.getKey(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(shard.getValue().toString().getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 一批流程实例的归档内容，历史任务、活动和变量按流程实例ID各查询一次
+     */
+    private List<ArchivedProcessInstance> archiveOf(List<HistoricProcessInstance> processInstances) {
+        List<String> ids = processInstances.stream().map(HistoricProcessInstance::getId).collect(Collectors.toList());
+        String in = inClause(ids.size());
+        NativeHistoricTaskInstanceQuery taskQuery = historyService.createNativeHistoricTaskInstanceQuery()
+                .sql("SELECT RES.* FROM ACT_HI_TASKINST RES WHERE RES.PROC_INST_ID_ IN " + in
+                        + " ORDER BY RES.START_TIME_ ASC, RES.ID_ ASC");
+        Map<String, List<HistoricTaskView>> tasks = bind(taskQuery, ids).list().stream()
+                .collect(Collectors.groupingBy(HistoricTaskInstance::getProcessInstanceId,
+                        Collectors.mapping(HistoricTaskView::of, Collectors.toList())));
+        NativeHistoricActivityInstanceQuery activityQuery = historyService.createNativeHistoricActivityInstanceQuery()
+                .sql("SELECT RES.* FROM ACT_HI_ACTINST RES WHERE RES.PROC_INST_ID_ IN " + in
+                        + " ORDER BY RES.START_TIME_ ASC, RES.ID_ ASC");
+        Map<String, List<ArchivedProcessInstance.Activity>> activities = bind(activityQuery, ids).list().stream()
+                .collect(Collectors.groupingBy(HistoricActivityInstance::getProcessInstanceId,
+                        Collectors.mapping(ArchivedProcessInstance.Activity::of, Collectors.toList())));
+        // 原生查询不初始化变量值，保存在字节数组中的值需要在命令上下文中读取
+        Map<String, Map<String, Object>> variables = managementService.executeCommand(commandContext -> {
+            NativeHistoricVariableInstanceQuery variableQuery = historyService.createNativeHistoricVariableInstanceQuery()
+                    .sql("SELECT RES.* FROM ACT_HI_VARINST RES WHERE RES.PROC_INST_ID_ IN " + in);
+            Map<String, Map<String, Object>> values = new HashMap<>();
+            for (HistoricVariableInstance variable : bind(variableQuery, ids).list()) {
+                Map<String, Object> processVariables = values.computeIfAbsent(variable.getProcessInstanceId(), id -> new LinkedHashMap<>());
+                try {
+                    processVariables.put(variable.getVariableName(), objectMapper.valueToTree(variable.getValue()));
+                } catch (IllegalArgumentException e) {
+                    processVariables.put(variable.getVariableName(), String.valueOf(variable.getValue()));
+                }
+            }
+            return values;
+        });
+        return processInstances.stream()
+                .map(processInstance -> ArchivedProcessInstance.of(processInstance,
+                        tasks.getOrDefault(processInstance.getId(), Collections.emptyList()),
+                        activities.getOrDefault(processInstance.getId(), Collections.emptyList()),
+                        variables.getOrDefault(processInstance.getId(), Collections.emptyMap())))
+                .collect(Collectors.toList());
+    }
+
+    private static String inClause(int size) {
+        StringJoiner in = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < size; i++) {
+            in.add("#{id" + i + "}");
+        }
+        return in.toString();
+    }
+
+    private static <Q extends NativeQuery<?, ?>> Q bind(Q query, List<String> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            query.parameter("id" + i, ids.get(i));
+        }
+        return query;
+    }
+}
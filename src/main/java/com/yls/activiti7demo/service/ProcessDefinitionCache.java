@@ -0,0 +1,138 @@
+package com.yls.activiti7demo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流程定义元数据缓存
+ * <p>
+ * 按流程定义ID和流程定义KEY（最新版本）缓存流程定义，监听引擎的部署和删除事件失效缓存，
+ * 避免每次发起流程都查询一次ACT_RE_PROCDEF。部署事务提交后再失效一次，防止提交前被其他线程按旧数据重新加载。
+ */
+@Slf4j
+@Component
+public class ProcessDefinitionCache implements ActivitiEventListener {
+
+    private final RepositoryService repositoryService;
+    private final RuntimeService runtimeService;
+    private final Cache<String, Optional<ProcessDefinitionInfo>> byId;
+    private final Cache<String, Optional<ProcessDefinitionInfo>> latestByKey;
+
+    public ProcessDefinitionCache(RepositoryService repositoryService, RuntimeService runtimeService,
+                                  @Value("${activiti-demo.definition-cache.max-size:1000}") long maxSize,
+                                  @Value("${activiti-demo.definition-cache.expire-minutes:10}") long expireMinutes) {
+        this.repositoryService = repositoryService;
+        this.runtimeService = runtimeService;
+        // 过期时间兜底，避免失效遗漏时旧数据一直保留
+        this.byId = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
+        this.latestByKey = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
+    }
+
+    @PostConstruct
+    public void registerListener() {
+        runtimeService.addEventListener(this, ActivitiEventType.ENTITY_CREATED, ActivitiEventType.ENTITY_DELETED);
+    }
+
+    /**
+     * 按ID查询流程定义，该ID必须是对应KEY的最新版本，与原先的latestVersion()查询一致
+     */
+    public Optional<ProcessDefinitionInfo> findLatestById(String processDefinitionId) {
+        Optional<ProcessDefinitionInfo> processDefinition = findById(processDefinitionId);
+        return processDefinition.filter(info -> findLatestByKey(info.key())
+                .map(latest -> latest.id().equals(info.id()))
+                .orElse(false));
+    }
+
+    public Optional<ProcessDefinitionInfo> findById(String processDefinitionId) {
+        if (processDefinitionId == null) {
+            return Optional.empty();
+        }
+        return byId.get(processDefinitionId, id -> Optional.ofNullable(repositoryService.createProcessDefinitionQuery()
+                .processDefinitionId(id)
+                .singleResult()).map(ProcessDefinitionInfo::of));
+    }
+
+    public Optional<ProcessDefinitionInfo> findLatestByKey(String processDefinitionKey) {
+        if (processDefinitionKey == null) {
+            return Optional.empty();
+        }
+        return latestByKey.get(processDefinitionKey, key -> Optional.ofNullable(repositoryService.createProcessDefinitionQuery()
+                .processDefinitionKey(key)
+                .latestVersion()
+                .singleResult()).map(ProcessDefinitionInfo::of));
+    }
+
+    public void invalidateAll() {
+        byId.invalidateAll();
+        latestByKey.invalidateAll();
+    }
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (!(event instanceof ActivitiEntityEvent)) {
+            return;
+        }
+        Object entity = ((ActivitiEntityEvent) event).getEntity();
+        Runnable invalidation;
+        if (entity instanceof ProcessDefinition) {
+            ProcessDefinition processDefinition = (ProcessDefinition) entity;
+            invalidation = () -> {
+                byId.invalidate(processDefinition.getId());
+                latestByKey.invalidate(processDefinition.getKey());
+            };
+        } else if (entity instanceof Deployment && event.getType() == ActivitiEventType.ENTITY_DELETED) {
+            String deploymentId = ((Deployment) entity).getId();
+            invalidation = () -> {
+                byId.asMap().values().removeIf(info -> info.map(i -> i.deploymentId().equals(deploymentId)).orElse(true));
+                latestByKey.asMap().values().removeIf(info -> info.map(i -> i.deploymentId().equals(deploymentId)).orElse(true));
+            };
+        } else {
+            return;
+        }
+        invalidation.run();
+        // 事务提交前其他线程可能已按旧数据重新加载，提交后再失效一次
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    /**
+     * 流程定义元数据，不持有引擎实体
+     */
+    public record ProcessDefinitionInfo(String id, String key, String name, int version, String deploymentId) {
+
+        static ProcessDefinitionInfo of(ProcessDefinition processDefinition) {
+            return new ProcessDefinitionInfo(processDefinition.getId(), processDefinition.getKey(),
+                    processDefinition.getName(), processDefinition.getVersion(), processDefinition.getDeploymentId());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.yls.activiti7demo.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 流程图渲染缓存
+ * <p>
+ * 流程定义图按流程定义ID缓存（部署后不会再变化），流程实例图按实例ID和已执行节点集合缓存，
+ * 总容量按PNG字节数限制。流程定义被撤销或删除时需调用{@link #evictProcessDefinitions(Collection)}。
+ */
+@Slf4j
+@Component
+public class ProcessDiagramCache {
+
+    private final Cache<DiagramKey, byte[]> cache;
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    public ProcessDiagramCache(@Value("${activiti-demo.diagram-cache.max-bytes:67108864}") long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((DiagramKey key, byte[] image) -> image.length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取流程定义图，未命中时调用renderer渲染
+     */
+    public byte[] definitionImage(String processDefinitionId, Supplier<byte[]> renderer) {
+        return cache.get(new DiagramKey(processDefinitionId, null, Collections.emptySet()), key -> renderer.get());
+    }
+
+    /**
+     * 获取流程实例图（高亮已执行节点），未命中时调用renderer渲染
+     */
+    public byte[] instanceImage(String processDefinitionId, String processInstanceId,
+                                Collection<String> executedActivityIds, Supplier<byte[]> renderer) {
+        DiagramKey diagramKey = new DiagramKey(processDefinitionId, processInstanceId, new HashSet<>(executedActivityIds));
+        return cache.get(diagramKey, key -> renderer.get());
+    }
+
+    /**
+     * 移除指定流程定义下的所有流程图（定义图和实例图）
+     */
+    public void evictProcessDefinitions(Collection<String> processDefinitionIds) {
+        if (processDefinitionIds.isEmpty()) {
+            return;
+        }
+        Set<DiagramKey> keys = new HashSet<>();
+        for (DiagramKey key : cache.asMap().keySet()) {
+            if (processDefinitionIds.contains(key.processDefinitionId())) {
+                keys.add(key);
+            }
+        }
+        cache.invalidateAll(keys);
+        invalidationCount.addAndGet(keys.size());
+        log.info("流程定义:{}的流程图缓存已移除，共{}张", processDefinitionIds, keys.size());
+    }
+
+    public void evictAll() {
+        invalidationCount.addAndGet(cache.estimatedSize());
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.estimatedSize());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("evictionWeight", stats.evictionWeight());
+        map.put("invalidationCount", invalidationCount.get());
+        map.put("averageRenderMillis", stats.averageLoadPenalty() / 1_000_000D);
+        return map;
+    }
+
+    /**
+     * 缓存键，流程定义图的processInstanceId为null
+     */
+    private record DiagramKey(String processDefinitionId, String processInstanceId, Set<String> executedActivityIds) {
+    }
+}
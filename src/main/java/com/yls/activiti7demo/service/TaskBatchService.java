@@ -0,0 +1,88 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.config.PerformanceProperties;
+import com.yls.activiti7demo.pojo.TaskBatchResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.api.runtime.shared.identity.UserGroupManager;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.task.Task;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * 批量审批任务
+ * <p>
+ * 任务按chunkSize分组，每组在一个事务中完成认领和审批；某组出现异常时整组回滚，再逐个任务单独重试，
+ * 以便给出每个任务的处理结果。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TaskBatchService {
+
+    private final TaskService taskService;
+    private final UserGroupManager userGroupManager;
+    private final TransactionTemplate transactionTemplate;
+    private final WorkflowMetrics workflowMetrics;
+    private final PerformanceProperties performanceProperties;
+
+    /**
+     * 以username身份批量审批任务，调用前需已登录为该用户
+     */
+    public List<TaskBatchResult> complete(String username, List<String> taskIds, boolean approved) {
+        List<String> groups = userGroupManager.getUserGroups(username);
+        Map<String, Object> variables = Collections.singletonMap("approved", approved);
+        List<TaskBatchResult> results = new ArrayList<>(taskIds.size());
+        int chunkSize = performanceProperties.getBatch().getTaskChunkSize();
+        for (int from = 0; from < taskIds.size(); from += chunkSize) {
+            List<String> chunk = taskIds.subList(from, Math.min(from + chunkSize, taskIds.size()));
+            try {
+                results.addAll(transactionTemplate.execute(status -> completeChunk(username, groups, chunk, variables)));
+            } catch (RuntimeException e) {
+                log.warn("批量处理任务失败，逐个重试，任务ID:{}", chunk, e);
+                for (String taskId : chunk) {
+                    try {
+                        results.addAll(transactionTemplate.execute(
+                                status -> completeChunk(username, groups, Collections.singletonList(taskId), variables)));
+                    } catch (RuntimeException ex) {
+                        log.warn("处理任务失败，任务ID:{}", taskId, ex);
+                        results.add(TaskBatchResult.failure(taskId, ex.getMessage()));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<TaskBatchResult> completeChunk(String username, List<String> groups,
+                                                List<String> taskIds, Map<String, Object> variables) {
+        List<TaskBatchResult> results = new ArrayList<>(taskIds.size());
+        for (String taskId : taskIds) {
+            // 查询当前用户是否为任务的办理人或候选人
+            Task task = taskService.createTaskQuery()
+                    .taskId(taskId)
+                    .taskCandidateOrAssigned(username, groups)
+                    .active()
+                    .singleResult();
+            if (Objects.isNull(task)) {
+                results.add(TaskBatchResult.failure(taskId, "任务不存在或当前用户无权处理"));
+                continue;
+            }
+            String processDefinitionKey = workflowMetrics.keyOf(task.getProcessDefinitionId());
+            if (Objects.isNull(task.getAssignee())) {
+                workflowMetrics.record(WorkflowMetrics.TASK_CLAIM, processDefinitionKey,
+                        () -> taskService.claim(taskId, username));
+            } else if (!username.equals(task.getAssignee())) {
+                results.add(TaskBatchResult.failure(taskId, "任务已被" + task.getAssignee() + "认领"));
+                continue;
+            }
+            workflowMetrics.record(WorkflowMetrics.TASK_COMPLETE, processDefinitionKey,
+                    () -> taskService.complete(taskId, variables));
+            results.add(TaskBatchResult.success(taskId));
+        }
+        return results;
+    }
+}
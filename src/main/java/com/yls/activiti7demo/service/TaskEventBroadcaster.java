@@ -0,0 +1,244 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.pojo.TaskDelta;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务变化推送
+ * <p>
+ * 客户端按用户订阅SSE连接，同时接收该用户所在用户组的候选任务变化，不再轮询任务列表。
+ * 每个连接有一个有界发送队列，由发送线程池异步写出，慢客户端不会阻塞引擎事务；
+ * 队列满时关闭该连接，客户端重连后重新查询一次任务列表。连接数按用户和全局限制。
+ */
+@Slf4j
+@Service
+public class TaskEventBroadcaster {
+
+    private final ExecutorService executor;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final int queueCapacity;
+    private final long timeoutMillis;
+
+    private final Map<String, Set<Subscriber>> byUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> byGroup = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    public TaskEventBroadcaster(@Value("${activiti-demo.task-events.sender-threads:4}") int senderThreads,
+                                @Value("${activiti-demo.task-events.max-connections:1000}") int maxConnections,
+                                @Value("${activiti-demo.task-events.max-connections-per-user:3}") int maxConnectionsPerUser,
+                                @Value("${activiti-demo.task-events.queue-capacity:100}") int queueCapacity,
+                                @Value("${activiti-demo.task-events.timeout-millis:1800000}") long timeoutMillis) {
+        this(Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("task-events-")),
+                maxConnections, maxConnectionsPerUser, queueCapacity, timeoutMillis);
+    }
+
+    TaskEventBroadcaster(ExecutorService executor, int maxConnections, int maxConnectionsPerUser,
+                         int queueCapacity, long timeoutMillis) {
+        this.executor = executor;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        byUser.values().forEach(subscribers -> subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    /**
+     * 订阅用户及其用户组的任务变化，超过连接数限制时返回空
+     */
+    public Optional<SseEmitter> subscribe(String username, Collection<String> groups) {
+        return subscribe(username, groups, new SseEmitter(timeoutMillis));
+    }
+
+    Optional<SseEmitter> subscribe(String username, Collection<String> groups, SseEmitter emitter) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            log.info("任务推送连接数已达上限{}，拒绝用户:{}", maxConnections, username);
+            return Optional.empty();
+        }
+        Subscriber subscriber = new Subscriber(username, Set.copyOf(groups), emitter, new ArrayBlockingQueue<>(queueCapacity));
+        boolean[] accepted = {false};
+        byUser.compute(username, (key, subscribers) -> {
+            Set<Subscriber> set = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+            if (set.size() < maxConnectionsPerUser) {
+                set.add(subscriber);
+                accepted[0] = true;
+            }
+            return set.isEmpty() ? null : set;
+        });
+        if (!accepted[0]) {
+            connections.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            log.info("用户:{}的任务推送连接数已达上限{}", username, maxConnectionsPerUser);
+            return Optional.empty();
+        }
+        subscriber.groups.forEach(group -> byGroup.computeIfAbsent(group, key -> ConcurrentHashMap.newKeySet()).add(subscriber));
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        // 连接建立事件，客户端收到后查询一次任务列表作为基线
+        enqueue(subscriber, new Event(sequence.incrementAndGet(), "connected", null));
+        return Optional.of(emitter);
+    }
+
+    /**
+     * 推送任务变化给办理人、候选用户和候选用户组的订阅者，同一连接只收到一次
+     */
+    public void publish(TaskDelta delta, Collection<String> users, Collection<String> groups) {
+        publishedCount.incrementAndGet();
+        Set<Subscriber> recipients = new HashSet<>();
+        users.forEach(user -> recipients.addAll(byUser.getOrDefault(user, Collections.emptySet())));
+        groups.forEach(group -> recipients.addAll(byGroup.getOrDefault(group, Collections.emptySet())));
+        if (recipients.isEmpty()) {
+            return;
+        }
+        Event event = new Event(sequence.incrementAndGet(), delta.type(), delta);
+        recipients.forEach(subscriber -> enqueue(subscriber, event));
+    }
+
+    /**
+     * 定时发送注释行保持连接，同时及时发现已断开的客户端
+     */
+    @Scheduled(fixedDelayString = "${activiti-demo.task-events.heartbeat-millis:25000}")
+    public void heartbeat() {
+        byUser.values().forEach(subscribers -> subscribers.forEach(subscriber -> enqueue(subscriber, Event.HEARTBEAT)));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("connections", connections.get());
+        map.put("users", byUser.size());
+        map.put("groups", byGroup.size());
+        map.put("publishedCount", publishedCount.get());
+        map.put("sentCount", sentCount.get());
+        map.put("rejectedCount", rejectedCount.get());
+        map.put("overflowCount", overflowCount.get());
+        return map;
+    }
+
+    private void enqueue(Subscriber subscriber, Event event) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (!subscriber.queue.offer(event)) {
+            overflowCount.incrementAndGet();
+            log.info("用户:{}的任务推送队列已满，关闭连接", subscriber.username);
+            close(subscriber);
+            return;
+        }
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                close(subscriber);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Event event;
+            while (!subscriber.closed.get() && (event = subscriber.queue.poll()) != null) {
+                subscriber.emitter.send(event.toSse());
+                sentCount.incrementAndGet();
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("用户:{}的任务推送连接已断开", subscriber.username);
+            close(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // 排空后到达的事件
+        if (!subscriber.closed.get() && !subscriber.queue.isEmpty()) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscriber.queue.clear();
+        byUser.computeIfPresent(subscriber.username, (key, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        subscriber.groups.forEach(group -> byGroup.computeIfPresent(group, (key, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        }));
+        connections.decrementAndGet();
+        return true;
+    }
+
+    private record Subscriber(String username, Set<String> groups, SseEmitter emitter, BlockingQueue<Event> queue,
+                              AtomicBoolean draining, AtomicBoolean closed) {
+
+        Subscriber(String username, Set<String> groups, SseEmitter emitter, BlockingQueue<Event> queue) {
+            this(username, groups, emitter, queue, new AtomicBoolean(), new AtomicBoolean());
+        }
+
+        // 同一用户的多个连接各自独立，不能按字段判等
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * 待发送的事件，delta为空时是连接建立或心跳事件
+     */
+    private record Event(long id, String name, TaskDelta delta) {
+
+        static final Event HEARTBEAT = new Event(0, null, null);
+
+        SseEmitter.SseEventBuilder toSse() {
+            if (this == HEARTBEAT) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().id(String.valueOf(id)).name(name);
+            return delta == null ? builder.data(name) : builder.data(delta, MediaType.APPLICATION_JSON);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.yls.activiti7demo.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 任务和候选人变化的引擎监听器，分发给{@link TaskInboxService}和{@link TaskEventPublisher}
+ * <p>
+ * 每个任务事件只计算一次相关人。收件箱与引擎数据在同一事务中提交，更新失败时引擎命令回滚；
+ * 推送只在提交后发送，登记失败只记录日志，不影响引擎命令。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskEventDispatcher implements ActivitiEventListener {
+
+    private final RuntimeService runtimeService;
+    private final TaskInboxService taskInboxService;
+    private final TaskEventPublisher taskEventPublisher;
+
+    @PostConstruct
+    public void registerListener() {
+        runtimeService.addEventListener(this, ActivitiEventType.TASK_CREATED, ActivitiEventType.TASK_ASSIGNED,
+                ActivitiEventType.TASK_COMPLETED, ActivitiEventType.ENTITY_UPDATED,
+                ActivitiEventType.ENTITY_CREATED, ActivitiEventType.ENTITY_DELETED);
+    }
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (!(event instanceof ActivitiEntityEvent entityEvent)) {
+            return;
+        }
+        ActivitiEventType type = event.getType();
+        Object entity = entityEvent.getEntity();
+        if (entity instanceof TaskEntity task && type != ActivitiEventType.ENTITY_CREATED) {
+            TaskRecipients recipients = TaskRecipients.of(task);
+            taskInboxService.onTaskEvent(type, task, recipients);
+            if (type != ActivitiEventType.ENTITY_UPDATED) {
+                try {
+                    taskEventPublisher.onTaskEvent(type, task, recipients);
+                } catch (RuntimeException e) {
+                    log.warn("登记任务:{}的推送失败", task.getId(), e);
+                }
+            }
+        } else if (entity instanceof IdentityLinkEntity link) {
+            taskInboxService.onIdentityLinkEvent(type, link);
+        }
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.pojo.TaskDelta;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * 任务创建、分配、完成和删除事件由{@link TaskEventDispatcher}转来，事务提交后交给{@link TaskEventBroadcaster}推送
+ * <p>
+ * 接收人在事件发生时（引擎命令内）确定：办理人、原办理人、候选用户和候选用户组。
+ * 同一事务内的事件合并后推送：任务完成时随之触发的删除事件、任务创建前的分配事件不再单独推送。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskEventPublisher {
+
+    private final TaskEventBroadcaster broadcaster;
+
+    void onTaskEvent(ActivitiEventType eventType, TaskEntity task, TaskRecipients recipients) {
+        String type = switch (eventType) {
+            case TASK_CREATED -> TaskDelta.CREATED;
+            case TASK_ASSIGNED -> TaskDelta.ASSIGNED;
+            case TASK_COMPLETED -> TaskDelta.COMPLETED;
+            default -> TaskDelta.DELETED;
+        };
+        TaskDelta delta = new TaskDelta(type, task.getId(), task.getName(), task.getProcessInstanceId(),
+                task.getProcessDefinitionId(), task.getAssignee(), task.getCreateTime());
+        Set<String> users = new HashSet<>(recipients.candidateUsers());
+        if (Objects.nonNull(recipients.assignee())) {
+            users.add(recipients.assignee());
+        }
+        // 转办时原办理人也需要移除该任务
+        if (Objects.nonNull(recipients.previousAssignee())) {
+            users.add(recipients.previousAssignee());
+        }
+        dispatch(new Notification(delta, users, new HashSet<>(recipients.candidateGroups())));
+    }
+
+    private void dispatch(Notification notification) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(notification);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Notification> pending = (List<Notification>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Notification> notifications = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, notifications);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifications.forEach(TaskEventPublisher.this::publish);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TaskEventPublisher.this);
+                }
+            });
+            pending = notifications;
+        }
+        merge(pending, notification);
+    }
+
+    private void merge(List<Notification> pending, Notification notification) {
+        TaskDelta delta = notification.delta();
+        switch (delta.type()) {
+            case TaskDelta.CREATED -> pending.removeIf(p -> sameTask(p, delta) && TaskDelta.ASSIGNED.equals(p.delta().type()));
+            case TaskDelta.DELETED -> {
+                if (pending.stream().anyMatch(p -> sameTask(p, delta) && TaskDelta.COMPLETED.equals(p.delta().type()))) {
+                    return;
+                }
+            }
+            default -> {
+            }
+        }
+        pending.add(notification);
+    }
+
+    private boolean sameTask(Notification notification, TaskDelta delta) {
+        return notification.delta().taskId().equals(delta.taskId());
+    }
+
+    private void publish(Notification notification) {
+        try {
+            broadcaster.publish(notification.delta(), notification.users(), notification.groups());
+        } catch (RuntimeException e) {
+            log.warn("推送任务:{}的变化失败", notification.delta().taskId(), e);
+        }
+    }
+
+    private record Notification(TaskDelta delta, Set<String> users, Set<String> groups) {
+    }
+}
@@ -0,0 +1,192 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.entity.TaskInboxEntry;
+import com.yls.activiti7demo.repository.TaskInboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.api.runtime.shared.identity.UserGroupManager;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.task.IdentityLinkType;
+import org.activiti.engine.task.Task;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * 待办收件箱读模型
+ * <p>
+ * 引擎的任务和候选人变化由{@link TaskEventDispatcher}转来，在同一事务提交前按任务重写收件箱行，与引擎数据一起提交或回滚。
+ * 同一事务内同一任务的多次变化只写一次：任务事件直接使用事件中的任务数据，候选人变化在提交前重新查询该任务。
+ * 查询收件箱只按ownerKey查DEMO_TASK_INBOX，不再关联ACT_RU_TASK和ACT_RU_IDENTITYLINK。
+ */
+@Slf4j
+@Service
+public class TaskInboxService {
+
+    private static final String INBOX_COLUMNS = "INSERT INTO DEMO_TASK_INBOX"
+            + " (OWNER_KEY_, TASK_ID_, NAME_, PROC_INST_ID_, PROC_DEF_ID_, ASSIGNEE_, CREATE_TIME_)";
+    private static final String TASK_COLUMNS = "RES.ID_, RES.NAME_, RES.PROC_INST_ID_, RES.PROC_DEF_ID_, RES.ASSIGNEE_, RES.CREATE_TIME_";
+    private static final String CANDIDATE_JOIN = " FROM ACT_RU_TASK RES"
+            + " JOIN ACT_RU_IDENTITYLINK I ON I.TASK_ID_ = RES.ID_ AND I.TYPE_ = 'candidate'"
+            + " WHERE RES.ASSIGNEE_ IS NULL";
+    private static final List<String> REBUILD_SQL = List.of(
+            INBOX_COLUMNS + " SELECT CONCAT('" + TaskInboxEntry.USER_PREFIX + "', RES.ASSIGNEE_), " + TASK_COLUMNS
+                    + " FROM ACT_RU_TASK RES WHERE RES.ASSIGNEE_ IS NOT NULL",
+            INBOX_COLUMNS + " SELECT DISTINCT CONCAT('" + TaskInboxEntry.USER_PREFIX + "', I.USER_ID_), " + TASK_COLUMNS
+                    + CANDIDATE_JOIN + " AND I.USER_ID_ IS NOT NULL",
+            INBOX_COLUMNS + " SELECT DISTINCT CONCAT('" + TaskInboxEntry.GROUP_PREFIX + "', I.GROUP_ID_), " + TASK_COLUMNS
+                    + CANDIDATE_JOIN + " AND I.GROUP_ID_ IS NOT NULL",
+            // 所有人可能同时是办理人或候选用户，已有的行不重复插入
+            INBOX_COLUMNS + " SELECT CONCAT('" + TaskInboxEntry.USER_PREFIX + "', RES.OWNER_), " + TASK_COLUMNS
+                    + " FROM ACT_RU_TASK RES WHERE RES.OWNER_ IS NOT NULL AND NOT EXISTS (SELECT 1 FROM DEMO_TASK_INBOX E"
+                    + " WHERE E.TASK_ID_ = RES.ID_ AND E.OWNER_KEY_ = CONCAT('" + TaskInboxEntry.USER_PREFIX + "', RES.OWNER_))");
+
+    private final TaskService taskService;
+    private final UserGroupManager userGroupManager;
+    private final TaskInboxRepository taskInboxRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public TaskInboxService(TaskService taskService, UserGroupManager userGroupManager,
+                            TaskInboxRepository taskInboxRepository, JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate) {
+        this.taskService = taskService;
+        this.userGroupManager = userGroupManager;
+        this.taskInboxRepository = taskInboxRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * 用户的待办：办理人或所有人为该用户，或未分配且该用户/所在用户组为候选人，与taskRuntime.tasks()范围一致
+     * <p>
+     * 同一任务可能通过多个ownerKey出现，查询中按任务去重后再分页
+     */
+    public List<TaskInboxEntry> inbox(String username, int page, int size) {
+        List<String> ownerKeys = new ArrayList<>();
+        ownerKeys.add(TaskInboxEntry.userKey(username));
+        userGroupManager.getUserGroups(username).forEach(group -> ownerKeys.add(TaskInboxEntry.groupKey(group)));
+        return taskInboxRepository.findInbox(ownerKeys, PageRequest.of(Math.max(page, 0), size));
+    }
+
+    /**
+     * 收件箱表为空而引擎中有未完成的任务时（首次部署或清空了表），启动后按运行时任务表重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (taskInboxRepository.count() == 0 && taskService.createTaskQuery().count() > 0) {
+            log.info("待办收件箱为空，按运行时任务表重建");
+            rebuild();
+        }
+    }
+
+    /**
+     * 按引擎运行时任务表重建收件箱，返回重建后的行数
+     */
+    public int rebuild() {
+        int rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM DEMO_TASK_INBOX");
+            return REBUILD_SQL.stream().mapToInt(jdbcTemplate::update).sum();
+        });
+        log.info("重建待办收件箱完成，共{}行", rows);
+        return rows;
+    }
+
+    void onTaskEvent(ActivitiEventType type, TaskEntity task, TaskRecipients recipients) {
+        switch (type) {
+            case TASK_CREATED, TASK_ASSIGNED, ENTITY_UPDATED -> pending().put(task.getId(), rowsOf(task, recipients));
+            case TASK_COMPLETED, ENTITY_DELETED -> pending().put(task.getId(), Collections.emptyList());
+            default -> {
+            }
+        }
+    }
+
+    void onIdentityLinkEvent(ActivitiEventType type, IdentityLinkEntity link) {
+        if (Objects.isNull(link.getTaskId()) || !IdentityLinkType.CANDIDATE.equals(link.getType())) {
+            return;
+        }
+        // 任务创建时候选人先于TASK_CREATED写入，已有该任务的数据时以任务事件为准
+        if (type == ActivitiEventType.ENTITY_DELETED || !pending().containsKey(link.getTaskId())) {
+            pending().put(link.getTaskId(), null);
+        }
+    }
+
+    /**
+     * 当前事务待写入的任务，值为null表示提交前重新查询该任务
+     */
+    private Map<String, List<TaskInboxEntry>> pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("收件箱只能在事务中更新");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, List<TaskInboxEntry>> pending =
+                (Map<String, List<TaskInboxEntry>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<String, List<TaskInboxEntry>> changes = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    apply(changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TaskInboxService.this);
+                }
+            });
+            pending = changes;
+        }
+        return pending;
+    }
+
+    private void apply(Map<String, List<TaskInboxEntry>> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<TaskInboxEntry> rows = new ArrayList<>();
+        changes.forEach((taskId, taskRows) -> rows.addAll(Objects.nonNull(taskRows) ? taskRows : load(taskId)));
+        taskInboxRepository.deleteByTaskIds(changes.keySet());
+        taskInboxRepository.saveAll(rows);
+        changes.clear();
+    }
+
+    private List<TaskInboxEntry> load(String taskId) {
+        Task task = taskService.createTaskQuery().taskId(taskId).singleResult();
+        if (Objects.isNull(task)) {
+            return Collections.emptyList();
+        }
+        return rowsOf(task, TaskRecipients.of(task,
+                task.getAssignee() == null ? taskService.getIdentityLinksForTask(taskId) : Collections.emptyList()));
+    }
+
+    /**
+     * 已分配的任务只属于办理人和所有人，未分配时再加上候选用户和候选用户组
+     */
+    private List<TaskInboxEntry> rowsOf(Task task, TaskRecipients recipients) {
+        Set<String> ownerKeys = new LinkedHashSet<>();
+        if (Objects.nonNull(recipients.assignee())) {
+            ownerKeys.add(TaskInboxEntry.userKey(recipients.assignee()));
+        }
+        if (Objects.nonNull(recipients.owner())) {
+            ownerKeys.add(TaskInboxEntry.userKey(recipients.owner()));
+        }
+        if (Objects.isNull(recipients.assignee())) {
+            recipients.candidateUsers().forEach(user -> ownerKeys.add(TaskInboxEntry.userKey(user)));
+            recipients.candidateGroups().forEach(group -> ownerKeys.add(TaskInboxEntry.groupKey(group)));
+        }
+        List<TaskInboxEntry> rows = new ArrayList<>(ownerKeys.size());
+        ownerKeys.forEach(ownerKey -> rows.add(new TaskInboxEntry(ownerKey, task.getId(), task.getName(),
+                task.getProcessInstanceId(), task.getProcessDefinitionId(), task.getAssignee(), task.getCreateTime())));
+        return rows;
+    }
+}
@@ -0,0 +1,47 @@
+package com.yls.activiti7demo.service;
+
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.task.IdentityLink;
+import org.activiti.engine.task.IdentityLinkType;
+import org.activiti.engine.task.Task;
+
+import java.util.*;
+
+/**
+ * 任务的相关人：办理人、转办前的办理人、所有人、候选用户和候选用户组
+ * <p>
+ * 每个任务事件只遍历一次身份关联，由{@link TaskEventDispatcher}计算后同时交给收件箱和推送使用。
+ */
+record TaskRecipients(String assignee, String previousAssignee, String owner,
+                      Set<String> candidateUsers, Set<String> candidateGroups) {
+
+    /**
+     * 引擎事件中的任务，原办理人取自任务加载时的持久化状态
+     */
+    static TaskRecipients of(TaskEntity task) {
+        String previousAssignee = task.getOriginalPersistentState() instanceof Map<?, ?> state
+                && state.get("assignee") instanceof String previous ? previous : null;
+        return of(task, previousAssignee, task.getIdentityLinks());
+    }
+
+    static TaskRecipients of(Task task, List<? extends IdentityLink> links) {
+        return of(task, null, links);
+    }
+
+    private static TaskRecipients of(Task task, String previousAssignee, List<? extends IdentityLink> links) {
+        Set<String> users = new LinkedHashSet<>();
+        Set<String> groups = new LinkedHashSet<>();
+        for (IdentityLink link : links) {
+            if (!IdentityLinkType.CANDIDATE.equals(link.getType())) {
+                continue;
+            }
+            if (Objects.nonNull(link.getUserId())) {
+                users.add(link.getUserId());
+            }
+            if (Objects.nonNull(link.getGroupId())) {
+                groups.add(link.getGroupId());
+            }
+        }
+        return new TaskRecipients(task.getAssignee(), previousAssignee, task.getOwner(), users, groups);
+    }
+}
@@ -0,0 +1,138 @@
+package com.yls.activiti7demo.service;
+
+import io.micrometer.core.instrument.*;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.RuntimeService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 流程热点路径的Micrometer指标
+ * <p>
+ * 计时器按流程定义key和结果打标签，计时器的count即调用次数；
+ * 运行中的流程实例数和各用户组的待认领任务数由定时任务刷新，避免每次抓取指标都查库。
+ */
+@Slf4j
+@Service
+public class WorkflowMetrics {
+
+    public static final String PROCESS_START = "workflow.process.start";
+    public static final String TASK_CLAIM = "workflow.task.claim";
+    public static final String TASK_COMPLETE = "workflow.task.complete";
+    public static final String DEPLOYMENT = "workflow.deployment";
+    public static final String DIAGRAM_RENDER = "workflow.diagram.render";
+    public static final String MODEL_SAVE = "workflow.model.save";
+    public static final String STENCILSET_FETCH = "workflow.stencilset.fetch";
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    /**
+     * 模型未变化，沿用已有部署
+     */
+    public static final String UNCHANGED = "unchanged";
+
+    private static final String TAG_PROCESS_DEFINITION_KEY = "processDefinitionKey";
+    private static final String TAG_OUTCOME = "outcome";
+    private static final String NONE = "none";
+
+    private static final String OPEN_TASKS_BY_GROUP_SQL = "SELECT I.GROUP_ID_, COUNT(DISTINCT RES.ID_) FROM ACT_RU_TASK RES"
+            + " JOIN ACT_RU_IDENTITYLINK I ON I.TASK_ID_ = RES.ID_ AND I.TYPE_ = 'candidate'"
+            + " WHERE RES.ASSIGNEE_ IS NULL AND I.GROUP_ID_ IS NOT NULL GROUP BY I.GROUP_ID_";
+
+    private final MeterRegistry meterRegistry;
+    private final ProcessDefinitionCache processDefinitionCache;
+    private final RuntimeService runtimeService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong activeInstances = new AtomicLong();
+    private final MultiGauge openTasksByGroup;
+
+    public WorkflowMetrics(MeterRegistry meterRegistry, ProcessDefinitionCache processDefinitionCache,
+                           RuntimeService runtimeService, JdbcTemplate jdbcTemplate) {
+        this.meterRegistry = meterRegistry;
+        this.processDefinitionCache = processDefinitionCache;
+        this.runtimeService = runtimeService;
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("workflow.process.instances.active", activeInstances, AtomicLong::get)
+                .description("运行中的流程实例数")
+                .register(meterRegistry);
+        this.openTasksByGroup = MultiGauge.builder("workflow.tasks.open")
+                .description("各用户组未认领的候选任务数")
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stop(Timer.Sample sample, String name, String processDefinitionKey, String outcome) {
+        sample.stop(timer(name, processDefinitionKey, outcome));
+    }
+
+    /**
+     * 记录已测得的耗时，用于事务提交后再补记事务内的计时
+     */
+    public void record(String name, String processDefinitionKey, String outcome, long nanos) {
+        timer(name, processDefinitionKey, outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String processDefinitionKey, String outcome) {
+        return Timer.builder(name)
+                .tag(TAG_PROCESS_DEFINITION_KEY, Objects.isNull(processDefinitionKey) ? NONE : processDefinitionKey)
+                .tag(TAG_OUTCOME, outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 执行并计时，抛出异常时结果记为failure
+     */
+    public <T> T record(String name, String processDefinitionKey, Supplier<T> action) {
+        Timer.Sample sample = start();
+        try {
+            T result = action.get();
+            stop(sample, name, processDefinitionKey, SUCCESS);
+            return result;
+        } catch (RuntimeException e) {
+            stop(sample, name, processDefinitionKey, FAILURE);
+            throw e;
+        }
+    }
+
+    public void record(String name, String processDefinitionKey, Runnable action) {
+        record(name, processDefinitionKey, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 由流程定义ID得到标签使用的流程定义key
+     */
+    public String keyOf(String processDefinitionId) {
+        if (Objects.isNull(processDefinitionId)) {
+            return null;
+        }
+        return processDefinitionCache.findById(processDefinitionId)
+                .map(ProcessDefinitionCache.ProcessDefinitionInfo::key)
+                .orElse(null);
+    }
+
+    @Scheduled(fixedDelayString = "${activiti-demo.metrics.gauge-refresh-millis:30000}")
+    public void refreshGauges() {
+        try {
+            activeInstances.set(runtimeService.createProcessInstanceQuery().active().count());
+            List<MultiGauge.Row<?>> rows = jdbcTemplate.query(OPEN_TASKS_BY_GROUP_SQL,
+                    (rs, rowNum) -> MultiGauge.Row.of(Tags.of("group", rs.getString(1)), rs.getLong(2)));
+            openTasksByGroup.register(rows, true);
+        } catch (RuntimeException e) {
+            log.warn("刷新流程指标失败", e);
+        }
+    }
+}
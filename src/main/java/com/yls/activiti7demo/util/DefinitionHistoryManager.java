@@ -0,0 +1,57 @@
+package com.yls.activiti7demo.util;
+
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.history.DefaultHistoryManager;
+import org.activiti.engine.impl.history.HistoryLevel;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.VariableInstanceEntity;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 按流程定义KEY降低历史级别
+ * <p>
+ * 引擎按全局级别（通常为full）记录历史，未配置的流程定义保持全局级别。配置为audit的流程定义
+ * 不再写入full级别独有的历史明细（ACT_HI_DETAIL：每次变量变更和表单提交），流程实例、活动、任务和变量的历史保留。
+ */
+public class DefinitionHistoryManager extends DefaultHistoryManager {
+
+    private final Map<String, HistoryLevel> levels;
+
+    public DefinitionHistoryManager(ProcessEngineConfigurationImpl processEngineConfiguration, HistoryLevel historyLevel,
+                                    Map<String, HistoryLevel> levels) {
+        super(processEngineConfiguration, historyLevel);
+        this.levels = levels;
+    }
+
+    @Override
+    public void recordHistoricDetailVariableCreate(VariableInstanceEntity variable, ExecutionEntity sourceActivityExecution,
+                                                   boolean useActivityId) {
+        ExecutionEntity processInstance = Objects.isNull(variable.getProcessInstanceId())
+                ? null : getExecutionEntityManager().findById(variable.getProcessInstanceId());
+        if (isFullHistory(processInstance)) {
+            super.recordHistoricDetailVariableCreate(variable, sourceActivityExecution, useActivityId);
+        }
+    }
+
+    @Override
+    public void reportFormPropertiesSubmitted(ExecutionEntity processInstance, Map<String, String> properties, String taskId) {
+        if (isFullHistory(processInstance)) {
+            super.reportFormPropertiesSubmitted(processInstance, properties, taskId);
+        }
+    }
+
+    private boolean isFullHistory(ExecutionEntity processInstance) {
+        return Objects.isNull(processInstance) || levelOf(processInstance.getProcessDefinitionId()) == HistoryLevel.FULL;
+    }
+
+    private HistoryLevel levelOf(String processDefinitionId) {
+        if (Objects.isNull(processDefinitionId)) {
+            return HistoryLevel.FULL;
+        }
+        String key = ProcessDefinitionUtil.getProcessDefinition(processDefinitionId).getKey();
+        return levels.getOrDefault(key, HistoryLevel.FULL);
+    }
+}
@@ -0,0 +1,38 @@
+package com.yls.activiti7demo.util;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.util.StringUtils;
+
+/**
+ * 响应字段选择，作用于标注了{@code @JsonFilter(FieldSelection.FILTER_ID)}的对象
+ */
+public final class FieldSelection {
+
+    public static final String FILTER_ID = "fieldSelection";
+
+    /**
+     * 未指定字段时输出全部字段
+     */
+    public static final FilterProvider ALL_FIELDS = new SimpleFilterProvider()
+            .addFilter(FILTER_ID, SimpleBeanPropertyFilter.serializeAll());
+
+    private FieldSelection() {
+    }
+
+    /**
+     * fields为逗号分隔的字段名，为空时输出全部字段
+     */
+    public static MappingJacksonValue select(Object value, String fields) {
+        MappingJacksonValue wrapper = new MappingJacksonValue(value);
+        if (StringUtils.hasText(fields)) {
+            wrapper.setFilters(new SimpleFilterProvider().addFilter(FILTER_ID,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(StringUtils.commaDelimitedListToSet(fields.replace(" ", "")))));
+        } else {
+            wrapper.setFilters(ALL_FIELDS);
+        }
+        return wrapper;
+    }
+}
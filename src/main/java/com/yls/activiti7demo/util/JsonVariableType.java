@@ -0,0 +1,117 @@
+package com.yls.activiti7demo.util;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.impl.variable.ValueFields;
+import org.activiti.engine.impl.variable.VariableType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 以带版本号的JSON保存指定类型的流程变量，替代Java序列化
+ * <p>
+ * JSON不超过TEXT_列长度时直接存在变量行中，不再写ACT_GE_BYTEARRAY，历史变量和历史明细同样只复制文本；
+ * 超长时才写入字节数组。数据以"版本:JSON"保存，类结构变化时递增版本并在{@link #read}中兼容旧版本。
+ * <p>
+ * 反序列化后的对象缓存在变量实例上，修改对象属性后需要重新setVariable才会保存。
+ */
+public class JsonVariableType<T> implements VariableType {
+
+    /**
+     * ACT_RU_VARIABLE.TEXT_的长度
+     */
+    private static final int MAX_TEXT_LENGTH = 4000;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final String typeName;
+    private final Class<T> type;
+    private final int version;
+
+    public JsonVariableType(String typeName, Class<T> type, int version) {
+        this.typeName = typeName;
+        this.type = type;
+        this.version = version;
+    }
+
+    @Override
+    public String getTypeName() {
+        return typeName;
+    }
+
+    @Override
+    public boolean isCachable() {
+        return true;
+    }
+
+    @Override
+    public boolean isAbleToStore(Object value) {
+        return Objects.nonNull(value) && value.getClass() == type;
+    }
+
+    @Override
+    public void setValue(Object value, ValueFields valueFields) {
+        if (Objects.isNull(value)) {
+            valueFields.setTextValue(null);
+            valueFields.setBytes(null);
+            return;
+        }
+        String text = write(type.cast(value));
+        if (text.length() <= MAX_TEXT_LENGTH) {
+            valueFields.setTextValue(text);
+            valueFields.setBytes(null);
+        } else {
+            valueFields.setTextValue(null);
+            valueFields.setBytes(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public Object getValue(ValueFields valueFields) {
+        String text = valueFields.getTextValue();
+        if (Objects.isNull(text)) {
+            byte[] bytes = valueFields.getBytes();
+            if (Objects.isNull(bytes)) {
+                return null;
+            }
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return read(text);
+    }
+
+    public String write(T value) {
+        try {
+            return version + ":" + OBJECT_MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new ActivitiException("流程变量序列化失败:" + type.getName(), e);
+        }
+    }
+
+    public T read(String text) {
+        int separator = text.indexOf(':');
+        if (separator < 0) {
+            throw new ActivitiException("流程变量" + typeName + "的数据缺少版本号，应为\"版本:JSON\"格式:" + type.getName());
+        }
+        int dataVersion;
+        try {
+            dataVersion = Integer.parseInt(text.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new ActivitiException("流程变量" + typeName + "的版本号无效:" + type.getName(), e);
+        }
+        if (dataVersion > version) {
+            throw new ActivitiException("不支持的流程变量" + typeName + "版本" + dataVersion + ":" + type.getName());
+        }
+        try {
+            // 目前只有版本1，旧版本需要转换时在这里按dataVersion处理
+            return OBJECT_MAPPER.readValue(text.substring(separator + 1), type);
+        } catch (JsonProcessingException e) {
+            throw new ActivitiException("流程变量反序列化失败:" + type.getName(), e);
+        }
+    }
+}
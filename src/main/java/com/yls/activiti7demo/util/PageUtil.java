@@ -0,0 +1,58 @@
+package com.yls.activiti7demo.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 分页参数工具
+ */
+public final class PageUtil {
+
+    private PageUtil() {
+    }
+
+    /**
+     * 限制每页条数在1到maxSize之间
+     */
+    public static int limitSize(int size, int maxSize) {
+        return Math.max(1, Math.min(size, maxSize));
+    }
+
+    /**
+     * 起始下标，page从0开始
+     */
+    public static int startIndex(int page, int size) {
+        return Math.max(page, 0) * size;
+    }
+
+    /**
+     * 游标由排序字段（时间）和ID组成，对客户端不透明
+     */
+    public static String encodeCursor(Date time, String id) {
+        String cursor = time.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 游标由客户端传入，无法解析时返回400
+     */
+    public static Cursor decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("missing separator");
+            }
+            return new Cursor(new Date(Long.parseLong(decoded.substring(0, separator))), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "无效的游标:" + cursor, e);
+        }
+    }
+
+    public record Cursor(Date time, String id) {
+    }
+}
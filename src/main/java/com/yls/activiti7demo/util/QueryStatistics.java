@@ -0,0 +1,81 @@
+package com.yls.activiti7demo.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按请求统计JDBC语句数，仅在loadtest profile下由数据源代理和请求过滤器调用
+ * <p>
+ * 请求开始时在当前线程上计数，结束时按操作（请求方法和路径模板）汇总；请求之外执行的语句（异步作业、定时任务）记为background。
+ */
+public final class QueryStatistics {
+
+    public static final String BACKGROUND = "background";
+
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<>();
+
+    private static final Map<String, OperationStats> OPERATIONS = new ConcurrentHashMap<>();
+
+    private QueryStatistics() {
+    }
+
+    public static void begin() {
+        CURRENT.set(new long[1]);
+    }
+
+    public static void end(String operation) {
+        long[] counter = CURRENT.get();
+        CURRENT.remove();
+        if (counter != null) {
+            OPERATIONS.computeIfAbsent(operation, key -> new OperationStats()).record(counter[0]);
+        }
+    }
+
+    /**
+     * 数据源代理每创建一条语句调用一次
+     */
+    public static void increment() {
+        long[] counter = CURRENT.get();
+        if (counter != null) {
+            counter[0]++;
+        } else {
+            OPERATIONS.computeIfAbsent(BACKGROUND, key -> new OperationStats()).statements.increment();
+        }
+    }
+
+    public static Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        OPERATIONS.forEach((operation, stats) -> snapshot.put(operation, stats.toMap()));
+        return snapshot;
+    }
+
+    public static void reset() {
+        OPERATIONS.clear();
+    }
+
+    private static final class OperationStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+
+        void record(long count) {
+            requests.increment();
+            statements.add(count);
+            maxStatements.accumulateAndGet(count, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long requestCount = requests.sum();
+            long statementCount = statements.sum();
+            Map<String, Object> map = new TreeMap<>();
+            map.put("requests", requestCount);
+            map.put("statements", statementCount);
+            map.put("statementsPerRequest", requestCount == 0 ? 0D : (double) statementCount / requestCount);
+            map.put("maxStatementsPerRequest", maxStatements.get());
+            return map;
+        }
+    }
+}
@@ -15,71 +15,91 @@
  */
 package com.yls.activiti7demo.util;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class SecurityUtil {
 
     private final UserDetailsService userDetailsService;
 
-    public void logInAs(String username) {
+    /**
+     * 已解析的用户身份，过期后重新从UserDetailsService加载
+     */
+    private final Cache<String, Authentication> authentications;
 
-        UserDetails user = userDetailsService.loadUserByUsername(username);
-        if (user == null) {
-            throw new IllegalStateException("User " + username + " doesn't exist, please provide a valid user");
-        }
-        log.info("> Logged in as: " + username);
-        SecurityContextHolder.setContext(new SecurityContextImpl(new Authentication() {
-            @Override
-            public Collection<? extends GrantedAuthority> getAuthorities() {
-                return user.getAuthorities();
-            }
-
-            @Override
-            public Object getCredentials() {
-                return user.getPassword();
-            }
+    public SecurityUtil(UserDetailsService userDetailsService,
+                        @Value("${activiti-demo.security.principal-cache-seconds:300}") long principalCacheSeconds) {
+        this.userDetailsService = userDetailsService;
+        this.authentications = Caffeine.newBuilder()
+                .expireAfterWrite(principalCacheSeconds, TimeUnit.SECONDS)
+                .maximumSize(10_000)
+                .build();
+    }
 
-            @Override
-            public Object getDetails() {
-                return user;
-            }
+    /**
+     * 以username身份执行，返回的RunAs关闭时恢复之前的Spring Security和Activiti身份：
+     * <pre>
+     * try (SecurityUtil.RunAs ignored = securityUtil.runAs(username)) {
+     *     ...
+     * }
+     * </pre>
+     */
+    public RunAs runAs(String username) {
+        Authentication authentication = authenticate(username);
+        RunAs runAs = new RunAs(SecurityContextHolder.getContext(),
+                org.activiti.engine.impl.identity.Authentication.getAuthenticatedUserId());
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication);
+        SecurityContextHolder.setContext(context);
+        org.activiti.engine.impl.identity.Authentication.setAuthenticatedUserId(username);
+        return runAs;
+    }
 
-            @Override
-            public Object getPrincipal() {
-                return user;
+    private Authentication authenticate(String username) {
+        return authentications.get(username, name -> {
+            UserDetails user = userDetailsService.loadUserByUsername(name);
+            if (user == null) {
+                throw new IllegalStateException("User " + name + " doesn't exist, please provide a valid user");
             }
+            log.info("> Logged in as: " + name);
+            return new UsernamePasswordAuthenticationToken(user, user.getPassword(), user.getAuthorities());
+        });
+    }
 
-            @Override
-            public boolean isAuthenticated() {
-                return true;
-            }
+    /**
+     * runAs的作用域，关闭时恢复进入前的身份，进入前没有身份时清空
+     */
+    public static final class RunAs implements AutoCloseable {
 
-            @Override
-            public void setAuthenticated(boolean isAuthenticated) throws IllegalArgumentException {
+        private final SecurityContext previousContext;
+        private final String previousUserId;
 
-            }
+        private RunAs(SecurityContext previousContext, String previousUserId) {
+            this.previousContext = previousContext;
+            this.previousUserId = previousUserId;
+        }
 
-            @Override
-            public String getName() {
-                return user.getUsername();
+        @Override
+        public void close() {
+            if (previousContext.getAuthentication() == null) {
+                SecurityContextHolder.clearContext();
+            } else {
+                SecurityContextHolder.setContext(previousContext);
             }
-        }));
-        org.activiti.engine.impl.identity.Authentication.setAuthenticatedUserId(username);
+            org.activiti.engine.impl.identity.Authentication.setAuthenticatedUserId(previousUserId);
+        }
     }
 }
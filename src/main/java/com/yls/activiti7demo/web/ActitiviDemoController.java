@@ -1,9 +1,35 @@
 package com.yls.activiti7demo.web;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yls.activiti7demo.config.PerformanceProperties;
+import com.yls.activiti7demo.entity.TaskInboxEntry;
+import com.yls.activiti7demo.pojo.ArchivedProcessInstance;
+import com.yls.activiti7demo.pojo.BulkDeleteJob;
+import com.yls.activiti7demo.pojo.BulkDeleteRequest;
 import com.yls.activiti7demo.pojo.BusinessTrip;
+import com.yls.activiti7demo.pojo.CursorPage;
+import com.yls.activiti7demo.pojo.DeploymentJob;
+import com.yls.activiti7demo.pojo.HistoricTaskView;
+import com.yls.activiti7demo.pojo.ModelView;
+import com.yls.activiti7demo.pojo.ProcessInstanceView;
+import com.yls.activiti7demo.pojo.ProcessStartResult;
+import com.yls.activiti7demo.pojo.TaskBatchRequest;
+import com.yls.activiti7demo.pojo.TaskBatchResponse;
+import com.yls.activiti7demo.service.BulkDeleteService;
+import com.yls.activiti7demo.service.BusinessTripService;
+import com.yls.activiti7demo.service.KeysetQueryService;
+import com.yls.activiti7demo.service.ModelDeploymentService;
+import com.yls.activiti7demo.service.ProcessArchiveService;
+import com.yls.activiti7demo.service.ProcessDefinitionCache;
+import com.yls.activiti7demo.service.ProcessDefinitionCache.ProcessDefinitionInfo;
+import com.yls.activiti7demo.service.ProcessDiagramCache;
+import com.yls.activiti7demo.service.TaskBatchService;
+import com.yls.activiti7demo.service.TaskEventBroadcaster;
+import com.yls.activiti7demo.service.TaskInboxService;
+import com.yls.activiti7demo.service.WorkflowMetrics;
+import com.yls.activiti7demo.util.FieldSelection;
+import com.yls.activiti7demo.util.PageUtil;
 import com.yls.activiti7demo.util.SecurityUtil;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -14,6 +40,7 @@ import org.activiti.api.process.model.builders.DeleteProcessPayloadBuilder;
 import org.activiti.api.process.model.builders.ProcessPayloadBuilder;
 import org.activiti.api.process.model.payloads.DeleteProcessPayload;
 import org.activiti.api.process.runtime.ProcessRuntime;
+import org.activiti.api.runtime.shared.identity.UserGroupManager;
 import org.activiti.api.runtime.shared.query.Page;
 import org.activiti.api.runtime.shared.query.Pageable;
 import org.activiti.api.task.model.Task;
@@ -21,23 +48,27 @@ import org.activiti.api.task.model.builders.ClaimTaskPayloadBuilder;
 import org.activiti.api.task.model.builders.TaskPayloadBuilder;
 import org.activiti.api.task.model.payloads.CompleteTaskPayload;
 import org.activiti.api.task.runtime.TaskRuntime;
-import org.activiti.bpmn.model.BpmnModel;
-import org.activiti.editor.language.json.converter.BpmnJsonConverter;
 import org.activiti.engine.HistoryService;
 import org.activiti.engine.RepositoryService;
 import org.activiti.engine.TaskService;
 import org.activiti.engine.history.HistoricTaskInstance;
 import org.activiti.engine.repository.Deployment;
-import org.activiti.engine.repository.Model;
+import org.activiti.runtime.api.model.impl.APITaskConverter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -56,42 +87,53 @@ public class ActitiviDemoController {
     private final RepositoryService repositoryService;
     private final TaskService taskService;
     private final HistoryService historyService;
+    private final ProcessDiagramCache processDiagramCache;
+    private final TaskBatchService taskBatchService;
+    private final BusinessTripService businessTripService;
+    private final ProcessDefinitionCache processDefinitionCache;
+    private final KeysetQueryService keysetQueryService;
+    private final APITaskConverter taskConverter;
+    private final ModelDeploymentService modelDeploymentService;
+    private final WorkflowMetrics workflowMetrics;
+    private final TaskEventBroadcaster taskEventBroadcaster;
+    private final UserGroupManager userGroupManager;
+    private final TaskInboxService taskInboxService;
+    private final ProcessArchiveService processArchiveService;
+    private final BulkDeleteService bulkDeleteService;
+    private final PerformanceProperties performanceProperties;
 
     @Operation(description = "模型列表")
     @GetMapping("/allModels")
-    public List<Model> allModels() {
-        return repositoryService.createModelQuery().list();
+    public MappingJacksonValue allModels(@RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "10") int size,
+                                         @RequestParam(required = false) String fields) {
+        int limit = PageUtil.limitSize(size, performanceProperties.getPage().getMaxSize());
+        List<ModelView> models = repositoryService.createModelQuery()
+                .orderByCreateTime().asc()
+                .listPage(PageUtil.startIndex(page, limit), limit)
+                .stream()
+                .map(ModelView::of)
+                .collect(Collectors.toList());
+        return FieldSelection.select(models, fields);
     }
 
-    @Operation(description = "数据库模型部署")
+    @Operation(description = "数据库模型部署，部署在后台执行，返回部署任务")
     @GetMapping("/deployModel")
-    public Deployment deployModel(@RequestParam("modelId") String modelId) throws IOException {
-        Model model = repositoryService.getModel(modelId);
-        if (Objects.isNull(model)) {
-            return null;
-        }
-        String processName = model.getName();
-        if (StringUtils.hasText(processName)) {
-            byte[] bytes = repositoryService.getModelEditorSource(model.getId());
-            if (bytes == null) {
-                log.info("部署ID:{}的模型数据为空，请先设计流程并成功保存，再进行发布", modelId);
-                return null;
-            }
-            JsonNode modelNode = new ObjectMapper().readTree(bytes);
-            BpmnModel bpmnModel = new BpmnJsonConverter().convertToBpmnModel(modelNode);
-            return repositoryService.createDeployment()
-                    .addBpmnModel(processName + ".bpmn", bpmnModel)
-                    .name(processName)
-                    .deploy();
-        }
+    public DeploymentJob deployModel(@RequestParam("modelId") String modelId) {
+        return modelDeploymentService.submit(modelId);
+    }
 
-        return null;
+    @Operation(description = "模型部署任务状态")
+    @GetMapping("/deployModel/jobs/{jobId}")
+    public ResponseEntity<DeploymentJob> deployModelJob(@PathVariable String jobId) {
+        return ResponseEntity.of(modelDeploymentService.getJob(jobId));
     }
 
     @Operation(description = "流程定义列表")
     @GetMapping("/allProcess")
-    public List<ProcessDefinition> allProcess() {
-        return processRuntime.processDefinitions(Pageable.of(0, 10)).getContent();
+    public List<ProcessDefinition> allProcess(@RequestParam(defaultValue = "0") int page,
+                                              @RequestParam(defaultValue = "10") int size) {
+        return processRuntime.processDefinitions(pageable(page, size)).getContent();
     }
 
     @Operation(description = "删除所有流程定义列表")
@@ -101,161 +143,333 @@ public class ActitiviDemoController {
         list.forEach(deployment -> {
             repositoryService.deleteDeployment(deployment.getId(), true);
         });
+        processDiagramCache.evictAll();
+        processDefinitionCache.invalidateAll();
         return processRuntime.processDefinitions(Pageable.of(0, 10)).getContent();
     }
 
     @Operation(description = "创建流程实例并完成审批单填写")
     @PostMapping("/startProcess")
-    public ProcessInstance startProcess(@RequestBody BusinessTrip businessTrip) {
-        org.activiti.engine.repository.ProcessDefinition processDefinition = repositoryService.createProcessDefinitionQuery()
-                .processDefinitionId(businessTrip.getProcessDefinitionId())
-                .latestVersion()
-                .singleResult();
+    public ProcessInstanceView startProcess(@RequestBody BusinessTrip businessTrip) {
+        ProcessDefinitionInfo processDefinition = processDefinitionCache
+                .findLatestById(businessTrip.getProcessDefinitionId())
+                .orElse(null);
         if (Objects.isNull(processDefinition)) {
             log.error("该流程定义不存在，请检查流程定义ID:{}", businessTrip.getProcessDefinitionId());
             return null;
         }
         String user = businessTrip.getUser();
-        securityUtil.logInAs(user);
-        Map<String, Object> variables = new HashMap<>();
-        variables.put("businessTrip", businessTrip);
-        // 新建流程实例
-        ProcessInstance processInstance = processRuntime.start(
-                ProcessPayloadBuilder
-                        .start()
-                        .withProcessDefinitionKey(processDefinition.getKey())
-                        .withName(user + "的出差申请流程")
-                        .withVariables(variables)
-                        .build());
-
-        // 完成当前流程实例中填写审批单的任务
-        org.activiti.engine.task.Task userTask = taskService.createTaskQuery()
-                .processInstanceId(processInstance.getId())
-                .taskAssignee(user)
-                .singleResult();
-        if (Objects.nonNull(userTask)) {
-            String userTaskId = userTask.getId();
-            log.info("完成当前流程实例中填写审批单的任务，任务ID:{}", userTaskId);
-            taskService.setVariable(userTaskId, "businessTrip", businessTrip);
-            CompleteTaskPayload completeTaskPayload = TaskPayloadBuilder.complete()
-                    .withVariables(variables)
-                    .withTaskId(userTaskId)
-                    .build();
-            taskRuntime.complete(completeTaskPayload);
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(user)) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("businessTrip", businessTrip);
+            // 新建流程实例
+            ProcessInstance processInstance = workflowMetrics.record(WorkflowMetrics.PROCESS_START, processDefinition.key(),
+                    () -> processRuntime.start(
+                            ProcessPayloadBuilder
+                                    .start()
+                                    .withProcessDefinitionKey(processDefinition.key())
+                                    .withName(user + "的出差申请流程")
+                                    .withVariables(variables)
+                                    .build()));
+
+            // 完成当前流程实例中填写审批单的任务
+            org.activiti.engine.task.Task userTask = taskService.createTaskQuery()
+                    .processInstanceId(processInstance.getId())
+                    .taskAssignee(user)
+                    .singleResult();
+            if (Objects.nonNull(userTask)) {
+                String userTaskId = userTask.getId();
+                log.debug("完成当前流程实例中填写审批单的任务，任务ID:{}", userTaskId);
+                // businessTrip已在启动时写入流程变量，完成任务时不再重复写入
+                CompleteTaskPayload completeTaskPayload = TaskPayloadBuilder.complete()
+                        .withTaskId(userTaskId)
+                        .build();
+                workflowMetrics.record(WorkflowMetrics.TASK_COMPLETE, processDefinition.key(),
+                        () -> taskRuntime.complete(completeTaskPayload));
+            }
+            return ProcessInstanceView.of(processInstance);
         }
-        return processInstance;
+    }
+
+    @Operation(description = "批量创建流程实例并完成审批单填写")
+    @PostMapping("/startProcess/batch")
+    public List<ProcessStartResult> startProcessBatch(@RequestBody List<BusinessTrip> businessTrips) {
+        int maxStartSize = performanceProperties.getBatch().getMaxStartSize();
+        if (businessTrips.size() > maxStartSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "每次最多创建" + maxStartSize + "个流程实例");
+        }
+        List<ProcessStartResult> results = businessTripService.startBatch(businessTrips);
+        log.info("批量创建流程实例{}个，成功{}个", businessTrips.size(),
+                results.stream().filter(ProcessStartResult::isSuccess).count());
+        return results;
     }
 
     @Operation(description = "流程实例流程历史记录")
     @GetMapping("/processHistory")
-    public List<HistoricTaskInstance> processHistory(@RequestParam String processInstanceId) {
+    public MappingJacksonValue processHistory(@RequestParam String processInstanceId,
+                                              @RequestParam(defaultValue = "0") int page,
+                                              @RequestParam(defaultValue = "10") int size,
+                                              @RequestParam(required = false) String fields) {
+        int limit = PageUtil.limitSize(size, performanceProperties.getPage().getMaxSize());
         List<HistoricTaskInstance> historicTaskInstances = historyService.createHistoricTaskInstanceQuery()
                 // .includeProcessVariables()
                 // .includeTaskLocalVariables()
                 .processInstanceId(processInstanceId)
-                .list();
-        log.info("流程实例:{}的历史记录:{}", processInstanceId, historicTaskInstances);
-        return historicTaskInstances;
+                .orderByHistoricTaskInstanceStartTime().asc()
+                .listPage(PageUtil.startIndex(page, limit), limit);
+        log.debug("流程实例:{}的历史记录{}条", processInstanceId, historicTaskInstances.size());
+        return FieldSelection.select(historicTaskInstances.stream()
+                .map(HistoricTaskView::of)
+                .collect(Collectors.toList()), fields);
+    }
+
+    @Operation(description = "流程实例流程历史记录（游标分页）")
+    @GetMapping("/processHistory/cursor")
+    public MappingJacksonValue processHistoryByCursor(@RequestParam String processInstanceId,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "10") int size,
+                                                      @RequestParam(required = false) String fields) {
+        CursorPage<HistoricTaskInstance> historicTasks = keysetQueryService.historicTasks(processInstanceId, cursor,
+                PageUtil.limitSize(size, performanceProperties.getPage().getMaxSize()));
+        return FieldSelection.select(new CursorPage<>(historicTasks.getContent().stream()
+                .map(HistoricTaskView::of)
+                .collect(Collectors.toList()), historicTasks.getNextCursor()), fields);
+    }
+
+    /**
+     * 按流程定义KEY、发起人、发起时间批量删除流程实例（及部署），dryRun只返回匹配数量
+     */
+    @Operation(description = "批量删除流程实例和部署")
+    @PostMapping("/bulkDelete")
+    public BulkDeleteJob bulkDelete(@RequestBody BulkDeleteRequest request) {
+        return bulkDeleteService.submit(request);
+    }
+
+    @Operation(description = "批量删除任务进度")
+    @GetMapping("/bulkDelete/jobs/{jobId}")
+    public ResponseEntity<BulkDeleteJob> bulkDeleteJob(@PathVariable String jobId) {
+        return ResponseEntity.of(bulkDeleteService.getJob(jobId));
+    }
+
+    @Operation(description = "查询已归档的流程实例")
+    @GetMapping("/archive/processInstances/{processInstanceId}")
+    public ResponseEntity<ArchivedProcessInstance> archivedProcessInstance(@PathVariable String processInstanceId) throws IOException {
+        return ResponseEntity.of(processArchiveService.find(processInstanceId));
+    }
+
+    @Operation(description = "归档文件列表")
+    @GetMapping("/archive/files")
+    public List<Map<String, Object>> archiveFiles() throws IOException {
+        return processArchiveService.files();
+    }
+
+    @Operation(description = "立即归档并清理超过保留期限的流程实例，在后台执行，已有归档在运行时返回409")
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> runArchive() {
+        boolean submitted = processArchiveService.submit();
+        return ResponseEntity.status(submitted ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(processArchiveService.status());
+    }
+
+    @Operation(description = "归档运行状态和最近一次归档结果")
+    @GetMapping("/archive/status")
+    public Map<String, Object> archiveStatus() {
+        return processArchiveService.status();
     }
 
     @Operation(description = "当前用户流程实例列表")
     @GetMapping("/currentUserProcess")
-    public List<ProcessInstance> currentUserProcess(@RequestParam String username) {
+    public List<ProcessInstance> currentUserProcess(@RequestParam String username,
+                                                    @RequestParam(defaultValue = "0") int page,
+                                                    @RequestParam(defaultValue = "10") int size) {
         // TODO 所有用户都能看到所有流程实例？？？
-        securityUtil.logInAs(username);
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        Page<ProcessInstance> processInstancePage = processRuntime.processInstances(Pageable.of(0, 10));
-        log.info("当前用户:{}的流程实例:{}", authentication.getName(), processInstancePage.getContent());
-        return processInstancePage.getContent();
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(username)) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            Page<ProcessInstance> processInstancePage = processRuntime.processInstances(pageable(page, size));
+            log.debug("当前用户:{}的流程实例{}个", authentication.getName(), processInstancePage.getContent().size());
+            return processInstancePage.getContent();
+        }
     }
 
     @Operation(description = "删除当前用户所有流程列表")
     @DeleteMapping("/deleteCurrentUserProcess")
     public List<ProcessInstance> deleteCurrentUserProcess(@RequestParam String username) {
         // TODO 所有用户实例都被删除了？？？
-        securityUtil.logInAs(username);
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        Page<ProcessInstance> processInstancePage = processRuntime.processInstances(Pageable.of(0, 10));
-        List<ProcessInstance> content = processInstancePage.getContent();
-        for (ProcessInstance processInstance : content) {
-            DeleteProcessPayloadBuilder deleteProcessPayloadBuilder = new DeleteProcessPayloadBuilder();
-            DeleteProcessPayload build = deleteProcessPayloadBuilder.withProcessInstanceId(processInstance.getId()).build();
-            processRuntime.delete(build);
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(username)) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            Page<ProcessInstance> processInstancePage = processRuntime.processInstances(Pageable.of(0, 10));
+            List<ProcessInstance> content = processInstancePage.getContent();
+            for (ProcessInstance processInstance : content) {
+                DeleteProcessPayloadBuilder deleteProcessPayloadBuilder = new DeleteProcessPayloadBuilder();
+                DeleteProcessPayload build = deleteProcessPayloadBuilder.withProcessInstanceId(processInstance.getId()).build();
+                processRuntime.delete(build);
+            }
+            Page<ProcessInstance> processInstancePage1 = processRuntime.processInstances(Pageable.of(0, 10));
+            List<ProcessInstance> content1 = processInstancePage1.getContent();
+            log.debug("删除当前用户:{}的流程实例之后剩余{}个", authentication.getName(), content1.size());
+            return content1;
         }
-        Page<ProcessInstance> processInstancePage1 = processRuntime.processInstances(Pageable.of(0, 10));
-        List<ProcessInstance> content1 = processInstancePage1.getContent();
-        log.info("删除当前用户:{}的流程实例之后:{}", authentication.getName(), content1);
-        return content1;
     }
 
     @Operation(description = "当前用户任务列表")
     @GetMapping("/currentUserTasks")
-    public List<Task> currentUserTasks(@RequestParam String username) {
-        securityUtil.logInAs(username);
-        Page<Task> tasks = taskRuntime.tasks(Pageable.of(0, 10));
-        return tasks.getContent();
+    public List<Task> currentUserTasks(@RequestParam String username,
+                                       @RequestParam(defaultValue = "0") int page,
+                                       @RequestParam(defaultValue = "10") int size) {
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(username)) {
+            Page<Task> tasks = taskRuntime.tasks(pageable(page, size));
+            return tasks.getContent();
+        }
+    }
+
+    @Operation(description = "当前用户任务列表（游标分页）")
+    @GetMapping("/currentUserTasks/cursor")
+    public CursorPage<Task> currentUserTasksByCursor(@RequestParam String username,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "10") int size) {
+        CursorPage<org.activiti.engine.task.Task> tasks = keysetQueryService.userTasks(username, cursor,
+                PageUtil.limitSize(size, performanceProperties.getPage().getMaxSize()));
+        return new CursorPage<>(taskConverter.from(tasks.getContent()), tasks.getNextCursor());
+    }
+
+    @Operation(description = "当前用户待办（收件箱读模型）")
+    @GetMapping("/currentUserTasks/inbox")
+    public List<TaskInboxEntry> currentUserInbox(@RequestParam String username,
+                                                 @RequestParam(defaultValue = "0") int page,
+                                                 @RequestParam(defaultValue = "10") int size) {
+        return taskInboxService.inbox(username, page, PageUtil.limitSize(size, performanceProperties.getPage().getMaxSize()));
+    }
+
+    @Operation(description = "按引擎任务表重建待办收件箱")
+    @PostMapping("/currentUserTasks/inbox/rebuild")
+    public Map<String, Object> rebuildInbox() {
+        return Collections.singletonMap("rows", taskInboxService.rebuild());
+    }
+
+    /**
+     * 订阅当前用户及其用户组的任务变化，替代轮询任务列表
+     * <p>
+     * 连接建立后先收到connected事件，此时查询一次任务列表作为基线，之后按created/assigned/completed/deleted
+     * 事件更新本地列表；连接断开（包括推送队列满被服务端关闭）后重连并重新查询。
+     */
+    @Operation(description = "当前用户任务变化推送（SSE）")
+    @GetMapping(value = "/currentUserTasks/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> currentUserTaskEvents(@RequestParam String username) {
+        return taskEventBroadcaster.subscribe(username, userGroupManager.getUserGroups(username))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
+    }
+
+    @Operation(description = "任务变化推送统计")
+    @GetMapping("/currentUserTasks/events/stats")
+    public Map<String, Object> currentUserTaskEventStats() {
+        return taskEventBroadcaster.stats();
     }
 
     @Operation(description = "处理用户任务")
     @GetMapping("/handleUserTasks")
     public List<Task> handleUserTasks(@RequestParam String username,
-                                      @RequestParam String taskId) {
-        securityUtil.logInAs(username);
-        Task task = taskRuntime.task(taskId);
-        if (Objects.isNull(task)) {
-            log.info("任务不存在，任务ID:{}", taskId);
-            return Collections.emptyList();
+                                      @RequestParam String taskId,
+                                      @RequestParam(defaultValue = "10") int size) {
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(username)) {
+            Task task = taskRuntime.task(taskId);
+            if (Objects.isNull(task)) {
+                log.info("任务不存在，任务ID:{}", taskId);
+                return Collections.emptyList();
+            }
+            log.debug("当前用户:{}的任务详情:{}", username, task);
+            // 查询当前用户是否为任务的办理人
+            org.activiti.engine.task.Task userTask = taskService.createTaskQuery()
+                    .taskId(taskId)
+                    .active()
+                    .singleResult();
+            if (Objects.isNull(userTask)) {
+                log.info("可执行任务不存在，任务ID:{}", taskId);
+                return Collections.emptyList();
+            }
+            String processDefinitionKey = workflowMetrics.keyOf(userTask.getProcessDefinitionId());
+            // 如果任务的办理人为空，则认领任务
+            if (Objects.isNull(userTask.getAssignee())) {
+                // 领取任务
+                workflowMetrics.record(WorkflowMetrics.TASK_CLAIM, processDefinitionKey,
+                        () -> taskRuntime.claim(new ClaimTaskPayloadBuilder().withTaskId(taskId).build()));
+            }
+            // 设置流程所需参数
+            String userTaskId = userTask.getId();
+            taskService.setVariable(userTaskId, "approved", true);
+            // 审批通过
+            CompleteTaskPayload taskPayload = TaskPayloadBuilder.complete()
+                    .withVariable("approved", true)
+                    .withTaskId(userTaskId)
+                    .build();
+            workflowMetrics.record(WorkflowMetrics.TASK_COMPLETE, processDefinitionKey,
+                    () -> taskRuntime.complete(taskPayload));
+
+            Page<Task> tasks1 = taskRuntime.tasks(pageable(0, size));
+            log.debug("当前用户:{}的任务{}个", username, tasks1.getContent().size());
+            return tasks1.getContent();
         }
-        log.info("当前用户:{}的任务详情:{}", username, task);
-        // 查询当前用户是否为任务的办理人
-        org.activiti.engine.task.Task userTask = taskService.createTaskQuery()
-                .taskId(taskId)
-                .active()
-                .singleResult();
-        if (Objects.isNull(userTask)) {
-            log.info("可执行任务不存在，任务ID:{}", taskId);
-            return Collections.emptyList();
+    }
+
+    @Operation(description = "批量处理用户任务")
+    @PostMapping("/handleUserTasks/batch")
+    public TaskBatchResponse handleUserTasksBatch(@RequestBody TaskBatchRequest request) {
+        String username = request.getUsername();
+        List<String> taskIds = Objects.isNull(request.getTaskIds()) ? Collections.emptyList() : request.getTaskIds();
+        int maxTaskSize = performanceProperties.getBatch().getMaxTaskSize();
+        if (taskIds.size() > maxTaskSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "每次最多处理" + maxTaskSize + "个任务");
         }
-        // 如果任务的办理人为空，则认领任务
-        if (Objects.isNull(userTask.getAssignee())) {
-            // 领取任务
-            taskRuntime.claim(new ClaimTaskPayloadBuilder().withTaskId(taskId).build());
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs(username)) {
+            TaskBatchResponse response = new TaskBatchResponse();
+            response.setResults(taskBatchService.complete(username, taskIds, request.isApproved()));
+            response.setTasks(taskRuntime.tasks(pageable(0, request.getSize())).getContent());
+            log.info("当前用户:{}批量处理任务{}个", username, taskIds.size());
+            return response;
         }
-        // 设置流程所需参数
-        String userTaskId = userTask.getId();
-        taskService.setVariable(userTaskId, "approved", true);
-        // 审批通过
-        CompleteTaskPayload taskPayload = TaskPayloadBuilder.complete()
-                .withVariable("approved", true)
-                .withTaskId(userTaskId)
-                .build();
-        taskRuntime.complete(taskPayload);
-
-        Page<Task> tasks1 = taskRuntime.tasks(Pageable.of(0, 10));
-        log.info("当前用户:{}的任务1:{}", username, tasks1.getContent());
-        return tasks1.getContent();
     }
 
 
     /**
-     * 上传文件部署
+     * 列表分页参数，page从0开始，每页条数不超过page.maxSize
+     */
+    private Pageable pageable(int page, int size) {
+        int limit = PageUtil.limitSize(size, performanceProperties.getPage().getMaxSize());
+        return Pageable.of(PageUtil.startIndex(page, limit), limit);
+    }
+
+    /**
+     * 上传文件部署，内容与同名的最新部署相同时沿用已有部署；只支持zip和bpmn文件，其他类型返回400
      */
     @PostMapping("/uploadFileAndDeployment")
     public boolean uploadFileAndDeployment(@RequestParam("processFile") MultipartFile processFile,
                                            @RequestParam(value = "processName", required = false) String processName) throws IOException {
         String originalFilename = processFile.getOriginalFilename();
+        boolean zip = Objects.nonNull(originalFilename) && originalFilename.contains(".zip");
+        if (!zip && (Objects.isNull(originalFilename) || !originalFilename.contains(".bpmn"))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的文件类型:" + originalFilename + "，只能上传zip或bpmn文件");
+        }
         if (Objects.isNull(processName)) {
             processName = originalFilename.substring(0, originalFilename.lastIndexOf("."));
         }
         InputStream inputStream = processFile.getInputStream();
-        Deployment deployment = null;
-        if (originalFilename.contains(".zip")) {
-            // 压缩包部署方式
-            ZipInputStream zipInputStream = new ZipInputStream(inputStream);
-            deployment = repositoryService.createDeployment().addZipInputStream(zipInputStream).name(processName).deploy();
-        } else if (originalFilename.contains(".bpmn")) {
-            // bpmn文件部署方式
-            deployment = repositoryService.createDeployment().addInputStream(originalFilename, inputStream).name(processName).deploy();
+        Deployment deployment;
+        Timer.Sample sample = workflowMetrics.start();
+        String outcome = WorkflowMetrics.FAILURE;
+        try {
+            if (zip) {
+                // 压缩包部署方式
+                ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+                deployment = repositoryService.createDeployment().addZipInputStream(zipInputStream).name(processName)
+                        .enableDuplicateFiltering().deploy();
+            } else {
+                // bpmn文件部署方式
+                deployment = repositoryService.createDeployment().addInputStream(originalFilename, inputStream).name(processName)
+                        .enableDuplicateFiltering().deploy();
+            }
+            outcome = WorkflowMetrics.SUCCESS;
+        } finally {
+            workflowMetrics.stop(sample, WorkflowMetrics.DEPLOYMENT, null, outcome);
         }
         return Objects.nonNull(deployment.getVersion());
     }
@@ -0,0 +1,49 @@
+package com.yls.activiti7demo.web;
+
+import com.yls.activiti7demo.util.QueryStatistics;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压测辅助接口，只在loadtest profile下注册
+ */
+@Tag(name = "压测")
+@Profile("loadtest")
+@RestController
+@RequestMapping("/loadtest")
+@RequiredArgsConstructor
+public class LoadTestController {
+
+    private final Environment environment;
+
+    @Operation(description = "影响压测结果的服务端配置，随压测结果一起记录")
+    @GetMapping("/settings")
+    public Map<String, Object> settings() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("executionMode", environment.getProperty("activiti-demo.performance.web.execution-mode", "tomcat"));
+        settings.put("activeProfiles", environment.getActiveProfiles());
+        return settings;
+    }
+
+    @Operation(description = "按操作统计的JDBC语句数")
+    @GetMapping("/query-stats")
+    public Map<String, Map<String, Object>> queryStats() {
+        return QueryStatistics.snapshot();
+    }
+
+    @Operation(description = "清空JDBC语句统计")
+    @DeleteMapping("/query-stats")
+    public void resetQueryStats() {
+        QueryStatistics.reset();
+    }
+}
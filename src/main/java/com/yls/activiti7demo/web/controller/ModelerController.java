@@ -1,38 +1,46 @@
 package com.yls.activiti7demo.web.controller;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.yls.activiti7demo.constant.ModelDataJsonConstants;
+import com.yls.activiti7demo.pojo.DeploymentJob;
+import com.yls.activiti7demo.pojo.JobStatus;
+import com.yls.activiti7demo.service.ModelDeploymentService;
+import com.yls.activiti7demo.service.ProcessDiagramCache;
+import com.yls.activiti7demo.service.WorkflowMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.activiti.bpmn.model.BpmnModel;
-import org.activiti.editor.language.json.converter.BpmnJsonConverter;
 import org.activiti.engine.HistoryService;
 import org.activiti.engine.RepositoryService;
 import org.activiti.engine.RuntimeService;
 import org.activiti.engine.history.HistoricActivityInstance;
 import org.activiti.engine.history.HistoricProcessInstance;
 import org.activiti.engine.impl.persistence.entity.ProcessDefinitionEntity;
-import org.activiti.engine.repository.Deployment;
 import org.activiti.engine.repository.Model;
+import org.activiti.engine.repository.ProcessDefinition;
 import org.activiti.engine.runtime.ProcessInstance;
 import org.activiti.image.ProcessDiagramGenerator;
 import org.activiti.image.impl.DefaultProcessDiagramGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 流程控制器
@@ -52,6 +60,14 @@ public class ModelerController {
     private HistoryService historyService;
     @Resource
     private RuntimeService runtimeService;
+    @Resource
+    private ProcessDiagramCache processDiagramCache;
+    @Resource
+    private ModelDeploymentService modelDeploymentService;
+    @Resource
+    private WorkflowMetrics workflowMetrics;
+
+    private final ProcessDiagramGenerator diagramGenerator = new DefaultProcessDiagramGenerator();
 
 
     @GetMapping("/")
@@ -122,7 +138,7 @@ public class ModelerController {
     }
 
     /**
-     * 发布流程
+     * 发布流程，部署在后台执行，返回任务ID
      *
      * @param modelId 模型ID
      * @return
@@ -132,31 +148,25 @@ public class ModelerController {
     public Object publish(String modelId) {
         logger.info("流程部署入参modelId：{}", modelId);
         Map<String, String> map = new HashMap<String, String>();
-        try {
-            Model modelData = repositoryService.getModel(modelId);
-            byte[] bytes = repositoryService.getModelEditorSource(modelData.getId());
-            if (bytes == null) {
-                logger.info("部署ID:{}的模型数据为空，请先设计流程并成功保存，再进行发布", modelId);
-                map.put("code", "FAILURE");
-                return map;
-            }
-            JsonNode modelNode = new ObjectMapper().readTree(bytes);
-            BpmnModel model = new BpmnJsonConverter().convertToBpmnModel(modelNode);
-            Deployment deployment = repositoryService.createDeployment()
-                    .name(modelData.getName())
-                    .addBpmnModel(modelData.getKey() + ".bpmn20.xml", model)
-                    .deploy();
-            modelData.setDeploymentId(deployment.getId());
-            repositoryService.saveModel(modelData);
-            map.put("code", "SUCCESS");
-        } catch (Exception e) {
-            logger.info("部署modelId:{}模型服务异常：{}", modelId, e);
-            map.put("code", "FAILURE");
-        }
+        DeploymentJob job = modelDeploymentService.submit(modelId);
+        map.put("code", job.getStatus() == JobStatus.FAILURE ? "FAILURE" : "SUCCESS");
+        map.put("jobId", job.getJobId());
         logger.info("流程部署出参map：{}", map);
         return map;
     }
 
+    /**
+     * 查询发布任务状态
+     *
+     * @param jobId 发布返回的任务ID
+     * @return
+     */
+    @ResponseBody
+    @GetMapping("/publish/jobs/{jobId}")
+    public ResponseEntity<DeploymentJob> publishJob(@PathVariable String jobId) {
+        return ResponseEntity.of(modelDeploymentService.getJob(jobId));
+    }
+
     /**
      * 撤销流程定义
      *
@@ -171,11 +181,18 @@ public class ModelerController {
         Model modelData = repositoryService.getModel(modelId);
         if (null != modelData) {
             try {
+                List<String> processDefinitionIds = repositoryService.createProcessDefinitionQuery()
+                        .deploymentId(modelData.getDeploymentId())
+                        .list()
+                        .stream()
+                        .map(ProcessDefinition::getId)
+                        .collect(Collectors.toList());
                 /**
                  * 参数不加true:为普通删除，如果当前规则下有正在执行的流程，则抛异常
                  * 参数加true:为级联删除,会删除和当前规则相关的所有信息，包括历史
                  */
                 repositoryService.deleteDeployment(modelData.getDeploymentId(), true);
+                processDiagramCache.evictProcessDefinitions(processDefinitionIds);
                 map.put("code", "SUCCESS");
             } catch (Exception e) {
                 logger.error("撤销已部署流程服务异常：{}", e);
@@ -220,21 +237,31 @@ public class ModelerController {
     }
 
     @RequestMapping(value = "/image/{pid}", produces = MediaType.IMAGE_PNG_VALUE)
-    @ResponseBody
-    public byte[] definitionImage(@PathVariable("pid") String processDefinitionId) throws IOException {
+    public void definitionImage(@PathVariable("pid") String processDefinitionId,
+                                ServletWebRequest webRequest, HttpServletResponse response) throws IOException {
+        // 流程定义部署后不再变化，客户端缓存未过期时不查询也不渲染
+        if (webRequest.checkNotModified(diagramEtag(processDefinitionId, Collections.emptyList()))) {
+            return;
+        }
 
         BpmnModel model = repositoryService.getBpmnModel(processDefinitionId);
         if (model != null && model.getLocationMap().size() > 0) {
-            ProcessDiagramGenerator generator = new DefaultProcessDiagramGenerator();
-            InputStream imageStream = generator.generateDiagram(model, Collections.singletonList("png"), new ArrayList<>());
-            byte[] buffer = new byte[imageStream.available()];
-            imageStream.read(buffer);
-            imageStream.close();
-            return buffer;
+            writeImage(response, processDiagramCache.definitionImage(processDefinitionId,
+                    () -> renderDiagram(model, new ArrayList<>())));
+            return;
         }
 
 
-        return new byte[0];
+        writeImage(response, new byte[0]);
+    }
+
+    /**
+     * 流程图缓存命中率统计
+     */
+    @GetMapping("/image/cache/stats")
+    @ResponseBody
+    public Map<String, Object> diagramCacheStats() {
+        return processDiagramCache.stats();
     }
 
     @GetMapping("/showImage")
@@ -245,8 +272,8 @@ public class ModelerController {
 
 
     @RequestMapping(value = "/image2/{pid}", produces = MediaType.IMAGE_PNG_VALUE)
-    @ResponseBody
-    public byte[] getProcessImage(@PathVariable("pid") String processInstanceId) throws Exception {
+    public void getProcessImage(@PathVariable("pid") String processInstanceId,
+                                ServletWebRequest webRequest, HttpServletResponse response) throws Exception {
 
         //  获取历史流程实例
 
@@ -266,26 +293,56 @@ public class ModelerController {
             // 已执行的节点ID集合
             List<String> executedActivityIdList = new ArrayList<>();
             @SuppressWarnings("unused") int index = 1;
-            log.info("获取已经执行的节点ID");
+            log.debug("获取已经执行的节点ID");
             for (HistoricActivityInstance activityInstance : historicActivityInstanceList) {
                 executedActivityIdList.add(activityInstance.getActivityId());
-                log.info("第[" + index + "]个已执行节点=" + activityInstance.getActivityId() + " : " + activityInstance
+                log.debug("第[{}]个已执行节点={} : {}", index, activityInstance.getActivityId(), activityInstance
                         .getActivityName());
 
                 index++;
             }
+            // 已执行节点未变化时流程图也不变化
+            if (webRequest.checkNotModified(diagramEtag(processInstanceId, executedActivityIdList))) {
+                return;
+            }
             // 获取流程图图像字符流
-            BpmnModel bpmnModel = repositoryService.getBpmnModel(processDefinition.getId());
-            DefaultProcessDiagramGenerator generator = new DefaultProcessDiagramGenerator();
-            InputStream imageStream = generator.generateDiagram(bpmnModel, Collections.singletonList("png"), executedActivityIdList);
-            byte[] buffer = new byte[imageStream.available()];
-            imageStream.read(buffer);
-            imageStream.close();
-
-            return buffer;
+            writeImage(response, processDiagramCache.instanceImage(processDefinition.getId(), processInstanceId, executedActivityIdList,
+                    () -> renderDiagram(repositoryService.getBpmnModel(processDefinition.getId()), executedActivityIdList)));
         }
 
     }
 
+    /**
+     * 流程图ETag，由流程定义ID或流程实例ID及已执行节点集合决定
+     */
+    private String diagramEtag(String id, Collection<String> executedActivityIds) {
+        String source = id + ":" + String.join(",", new TreeSet<>(executedActivityIds));
+        return "\"" + DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * 直接写出PNG字节，不经过消息转换器复制
+     */
+    private void writeImage(HttpServletResponse response, byte[] image) throws IOException {
+        response.setContentType(MediaType.IMAGE_PNG_VALUE);
+        response.setContentLength(image.length);
+        response.getOutputStream().write(image);
+    }
+
+    /**
+     * 渲染PNG流程图，highLightedActivities为需要高亮的节点ID
+     */
+    private byte[] renderDiagram(BpmnModel bpmnModel, List<String> highLightedActivities) {
+        String processDefinitionKey = Objects.isNull(bpmnModel.getMainProcess()) ? null : bpmnModel.getMainProcess().getId();
+        return workflowMetrics.record(WorkflowMetrics.DIAGRAM_RENDER, processDefinitionKey, () -> {
+            try (InputStream imageStream = diagramGenerator.generateDiagram(bpmnModel, Collections.singletonList("png"), highLightedActivities)) {
+                // 生成器返回内存中的字节流，readAllBytes只复制一次，不依赖available()估算大小
+                return imageStream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
 
 }
@@ -12,21 +12,17 @@
  */
 package com.yls.activiti7demo.web.controller.editor;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yls.activiti7demo.service.ModelEditorService;
 import org.activiti.editor.constants.ModelDataJsonConstants;
 import org.activiti.engine.ActivitiException;
-import org.activiti.engine.RepositoryService;
-import org.activiti.engine.repository.Model;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.util.Map;
 
 /**
  * @author Tijs Rademakers
@@ -37,35 +33,32 @@ public class ModelEditorJsonRestResource implements ModelDataJsonConstants {
     protected static final Logger LOGGER = LoggerFactory.getLogger(ModelEditorJsonRestResource.class);
 
     @Resource
-    private RepositoryService repositoryService;
-
-    @Resource
-    private ObjectMapper objectMapper;
+    private ModelEditorService modelEditorService;
 
+    /**
+     * 编辑器打开模型，返回中的editorRevision为增量保存时需要提交的版本
+     * <p>
+     * 直接写出缓存的序列化字节，不再解析和重新序列化
+     */
     @RequestMapping(value = "/model/{modelId}/json", method = RequestMethod.GET, produces = "application/json")
-    public ObjectNode getEditorJson(@PathVariable String modelId) {
-        ObjectNode modelNode = null;
-
-        Model model = repositoryService.getModel(modelId);
-
-        if (model != null) {
-            try {
-                if (StringUtils.isNotEmpty(model.getMetaInfo())) {
-                    modelNode = (ObjectNode) objectMapper.readTree(model.getMetaInfo());
-                } else {
-                    modelNode = objectMapper.createObjectNode();
-                    modelNode.put(MODEL_NAME, model.getName());
-                }
-                modelNode.put(MODEL_ID, model.getId());
-                ObjectNode editorJsonNode = (ObjectNode) objectMapper.readTree(
-                        new String(repositoryService.getModelEditorSource(model.getId()), "utf-8"));
-                modelNode.put("model", editorJsonNode);
-
-            } catch (Exception e) {
-                LOGGER.error("Error creating model JSON", e);
-                throw new ActivitiException("Error creating model JSON", e);
+    public ResponseEntity<byte[]> getEditorJson(@PathVariable String modelId) {
+        try {
+            byte[] editorJson = modelEditorService.editorJson(modelId);
+            if (editorJson == null) {
+                return ResponseEntity.ok().build();
             }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(editorJson);
+        } catch (Exception e) {
+            LOGGER.error("Error creating model JSON", e);
+            throw new ActivitiException("Error creating model JSON", e);
         }
-        return modelNode;
+    }
+
+    /**
+     * 编辑器数据缓存命中统计
+     */
+    @GetMapping("/model/json/cache/stats")
+    public Map<String, Object> editorJsonCacheStats() {
+        return modelEditorService.cacheStats();
     }
 }
@@ -1,25 +1,23 @@
 package com.yls.activiti7demo.web.controller.editor;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flipkart.zjsonpatch.JsonPatchApplicationException;
 import com.yls.activiti7demo.constant.ModelDataJsonConstants;
+import com.yls.activiti7demo.pojo.ModelPatchRequest;
+import com.yls.activiti7demo.service.ModelEditorService;
+import com.yls.activiti7demo.service.ModelThumbnailRenderer;
+import com.yls.activiti7demo.service.WorkflowMetrics;
+import io.micrometer.core.instrument.Timer;
 import org.activiti.engine.ActivitiException;
-import org.activiti.engine.RepositoryService;
-import org.activiti.engine.repository.Model;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.image.PNGTranscoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 流程信息入库
@@ -30,10 +28,13 @@ public class ModelSaveRestResource implements ModelDataJsonConstants {
     protected static final Logger LOGGER = LoggerFactory.getLogger(ModelSaveRestResource.class);
 
     @Resource
-    private RepositoryService repositoryService;
+    private ModelEditorService modelEditorService;
 
-    @Autowired
-    private ObjectMapper objectMapper;
+    @Resource
+    private ModelThumbnailRenderer modelThumbnailRenderer;
+
+    @Resource
+    private WorkflowMetrics workflowMetrics;
 
     /**
      * 保存流程
@@ -42,44 +43,70 @@ public class ModelSaveRestResource implements ModelDataJsonConstants {
      * @param name 流程模型名称
      * @param description
      * @param json_xml 流程文件
-     * @param svg_xml 图片
+     * @param svg_xml 图片，提交到后台转换为缩略图，不阻塞保存请求
      */
     @RequestMapping(value = "/model/{modelId}/save", method = RequestMethod.PUT)
     @ResponseStatus(value = HttpStatus.OK)
-    public void saveModel(@PathVariable String modelId
+    public Map<String, Object> saveModel(@PathVariable String modelId
             , String name, String description
             , String json_xml, String svg_xml) {
         try {
-
-            Model model = repositoryService.getModel(modelId);
-
-            ObjectNode modelJson = (ObjectNode) objectMapper.readTree(model.getMetaInfo());
-
-            modelJson.put(MODEL_NAME, name);
-            modelJson.put(MODEL_DESCRIPTION, description);
-            model.setMetaInfo(modelJson.toString());
-            model.setName(name);
-            repositoryService.saveModel(model);
-
-            repositoryService.addModelEditorSource(model.getId(), json_xml.getBytes(StandardCharsets.UTF_8));
-
-            InputStream svgStream = new ByteArrayInputStream(svg_xml.getBytes(StandardCharsets.UTF_8));
-            TranscoderInput input = new TranscoderInput(svgStream);
-
-            PNGTranscoder transcoder = new PNGTranscoder();
-            // Setup output
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            TranscoderOutput output = new TranscoderOutput(outStream);
-
-            // Do the transformation
-            transcoder.transcode(input, output);
-            final byte[] result = outStream.toByteArray();
-            repositoryService.addModelEditorSourceExtra(model.getId(), result);
-            outStream.close();
+            int revision = workflowMetrics.record(WorkflowMetrics.MODEL_SAVE, null,
+                    () -> modelEditorService.save(modelId, name, description, json_xml));
+            if (svg_xml != null) {
+                modelThumbnailRenderer.submit(modelId, svg_xml);
+            }
+            return Collections.singletonMap(MODEL_EDITOR_REVISION, revision);
         } catch (Exception e) {
             LOGGER.error("Error saving model", e);
             throw new ActivitiException("Error saving model", e);
         }
     }
 
+    /**
+     * 增量保存流程，只上传针对编辑器源数据的JSON Patch
+     * <p>
+     * 请求中的版本与服务端不一致时返回409和当前版本，客户端应改为完整保存
+     *
+     * @param modelId 模型ID
+     * @param request 基于的版本和JSON Patch
+     */
+    @PatchMapping("/model/{modelId}/save")
+    public ResponseEntity<Map<String, Object>> patchModel(@PathVariable String modelId,
+                                                          @RequestBody ModelPatchRequest request) {
+        if (request.getPatch() == null || !request.getPatch().isArray()) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", "patch必须是JSON Patch操作数组"));
+        }
+        ModelEditorService.SaveResult result;
+        Timer.Sample sample = workflowMetrics.start();
+        String outcome = WorkflowMetrics.FAILURE;
+        try {
+            result = modelEditorService.patch(modelId, request);
+            outcome = result.saved() ? WorkflowMetrics.SUCCESS : "conflict";
+        } catch (JsonPatchApplicationException e) {
+            LOGGER.info("模型:{}增量保存失败，补丁无法应用:{}", modelId, e.getMessage());
+            return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+        } finally {
+            workflowMetrics.stop(sample, WorkflowMetrics.MODEL_SAVE, null, outcome);
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put(MODEL_EDITOR_REVISION, result.revision());
+        if (!result.saved()) {
+            body.put("message", "模型已被修改，请完整保存");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+        }
+        if (request.getSvg_xml() != null) {
+            modelThumbnailRenderer.submit(modelId, request.getSvg_xml());
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * 缩略图渲染队列长度和耗时统计
+     */
+    @GetMapping("/model/thumbnail/stats")
+    public Map<String, Object> thumbnailStats() {
+        return modelThumbnailRenderer.stats();
+    }
+
 }
\ No newline at end of file
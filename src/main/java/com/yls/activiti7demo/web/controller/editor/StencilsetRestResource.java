@@ -12,29 +12,109 @@
  */
 package com.yls.activiti7demo.web.controller.editor;
 
+import com.yls.activiti7demo.service.WorkflowMetrics;
+import io.micrometer.core.instrument.Timer;
 import org.activiti.engine.ActivitiException;
 import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
+ * 编辑器组件定义
+ * <p>
+ * 启动时读取一次stencilset.json并预先压缩，按ETag支持304，客户端接受gzip时直接返回压缩后的内容。
+ *
  * @author Tijs Rademakers
  */
 @RestController
 public class StencilsetRestResource {
 
-    @RequestMapping(value = "/editor/stencilset", method = RequestMethod.GET, produces = "application/json;charset=utf-8")
-    public String getStencilset() {
-        InputStream stencilsetStream = this.getClass().getClassLoader().getResourceAsStream("stencilset.json");
-        try {
-            return IOUtils.toString(stencilsetStream, StandardCharsets.UTF_8);
-        } catch (Exception e) {
+    private static final String CONTENT_TYPE = "application/json;charset=utf-8";
+
+    @Resource
+    private WorkflowMetrics workflowMetrics;
+
+    @Value("${activiti-demo.stencilset.max-age-seconds:86400}")
+    private long maxAgeSeconds;
+
+    private byte[] stencilset;
+    private byte[] gzipStencilset;
+    private String etag;
+    private String gzipEtag;
+
+    @PostConstruct
+    public void load() {
+        try (InputStream stencilsetStream = this.getClass().getClassLoader().getResourceAsStream("stencilset.json")) {
+            if (stencilsetStream == null) {
+                throw new ActivitiException("stencilset.json not found");
+            }
+            stencilset = IOUtils.toByteArray(stencilsetStream);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(stencilset.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(stencilset);
+            }
+            gzipStencilset = out.toByteArray();
+        } catch (IOException e) {
             throw new ActivitiException("Error while loading stencil set", e);
         }
+        // 压缩与未压缩的内容字节不同，强ETag需要区分
+        String hash = DigestUtils.md5DigestAsHex(stencilset);
+        etag = "\"" + hash + "\"";
+        gzipEtag = "\"" + hash + "-gzip\"";
+    }
+
+    @RequestMapping(value = "/editor/stencilset", method = RequestMethod.GET, produces = CONTENT_TYPE)
+    public void getStencilset(ServletWebRequest webRequest, HttpServletResponse response) throws IOException {
+        boolean gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().getHeaderValue());
+        Timer.Sample sample = workflowMetrics.start();
+        String outcome = WorkflowMetrics.FAILURE;
+        try {
+            if (webRequest.checkNotModified(gzip ? gzipEtag : etag)) {
+                outcome = "not_modified";
+                return;
+            }
+            byte[] body = gzip ? gzipStencilset : stencilset;
+            if (gzip) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            response.setContentType(CONTENT_TYPE);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            outcome = WorkflowMetrics.SUCCESS;
+        } finally {
+            workflowMetrics.stop(sample, WorkflowMetrics.STENCILSET_FETCH, null, outcome);
+        }
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 }
@@ -101,6 +101,11 @@ activitiModeler
                     success(function (data, status, headers, config) {
                         $rootScope.editor = new ORYX.Editor(data);
                         $rootScope.modelData = angular.fromJson(data);
+                        // 增量保存的基准：服务端当前的编辑器源数据和版本
+                        $rootScope.savedModel = {
+                            revision: $rootScope.modelData.editorRevision,
+                            json: angular.copy($rootScope.modelData.model)
+                        };
                         $rootScope.editorFactory.resolve();
                     }).
                     error(function (data, status, headers, config) {
@@ -291,6 +291,56 @@ KISBPM.TOOLBAR = {
     }
 };
 
+/**
+ * 生成从from到to的JSON Patch(RFC 6902)操作，用于增量保存
+ */
+KISBPM.jsonPatch = function (from, to) {
+    var ops = [];
+    function escape(key) {
+        return String(key).replace(/~/g, '~0').replace(/\//g, '~1');
+    }
+    function isObject(value) {
+        return value !== null && typeof value === 'object';
+    }
+    function diff(a, b, path) {
+        if (!isObject(a) || !isObject(b) || angular.isArray(a) !== angular.isArray(b)) {
+            if (a !== b) {
+                ops.push({op: 'replace', path: path, value: b});
+            }
+            return;
+        }
+        if (angular.isArray(a)) {
+            var common = Math.min(a.length, b.length);
+            for (var i = 0; i < common; i++) {
+                diff(a[i], b[i], path + '/' + i);
+            }
+            for (var j = a.length - 1; j >= common; j--) {
+                ops.push({op: 'remove', path: path + '/' + j});
+            }
+            for (var k = common; k < b.length; k++) {
+                ops.push({op: 'add', path: path + '/-', value: b[k]});
+            }
+            return;
+        }
+        for (var removed in a) {
+            if (a.hasOwnProperty(removed) && !b.hasOwnProperty(removed)) {
+                ops.push({op: 'remove', path: path + '/' + escape(removed)});
+            }
+        }
+        for (var key in b) {
+            if (b.hasOwnProperty(key)) {
+                if (a.hasOwnProperty(key)) {
+                    diff(a[key], b[key], path + '/' + escape(key));
+                } else {
+                    ops.push({op: 'add', path: path + '/' + escape(key), value: b[key]});
+                }
+            }
+        }
+    }
+    diff(from, to, '');
+    return ops;
+};
+
 /** Custom controller for the save dialog */
 var SaveModelCtrl = [ '$rootScope', '$scope', '$http', '$route', '$location',
     function ($rootScope, $scope, $http, $route, $location) {
@@ -374,7 +424,70 @@ var SaveModelCtrl = [ '$rootScope', '$scope', '$http', '$route', '$location',
             name: $scope.saveDialog.name,
             description: $scope.saveDialog.description
         };
+        var editorJson = JSON.parse(json);
+
+        var onSaved = function (data) {
+            $rootScope.savedModel = {revision: data.editorRevision, json: editorJson};
+            $scope.editor.handleEvents({
+                type: ORYX.CONFIG.EVENT_SAVED
+            });
+            $scope.modelData.name = $scope.saveDialog.name;
+            $scope.modelData.lastUpdated = data.lastUpdated;
+
+            $scope.status.loading = false;
+            $scope.$hide();
+
+            // Fire event to all who is listening
+            var saveEvent = {
+                type: KISBPM.eventBus.EVENT_TYPE_MODEL_SAVED,
+                model: params,
+                modelId: modelMetaData.modelId,
+                eventType: 'update-model'
+            };
+            KISBPM.eventBus.dispatch(KISBPM.eventBus.EVENT_TYPE_MODEL_SAVED, saveEvent);
+
+            // Reset state
+            $scope.error = undefined;
+            $scope.status.loading = false;
+
+            // Execute any callback
+            if (successCallback) {
+                successCallback();
+            }
+        };
 
+        // 已知服务端版本时只上传JSON Patch，版本冲突(409)或补丁无法应用(400)时改为完整保存
+        var savedModel = $rootScope.savedModel;
+        if (savedModel && savedModel.json && savedModel.revision !== undefined) {
+            $http({    method: 'PATCH',
+                data: {
+                    revision: savedModel.revision,
+                    patch: KISBPM.jsonPatch(savedModel.json, editorJson),
+                    name: params.name,
+                    description: params.description,
+                    svg_xml: params.svg_xml
+                },
+                ignoreErrors: true,
+                headers: {'Accept': 'application/json', 'Content-Type': 'application/json; charset=UTF-8'},
+                url: KISBPM.URL.putModel(modelMetaData.modelId)})
+                .success(function (data) {
+                    onSaved(data);
+                })
+                .error(function (data, status) {
+                    if (status === 409 || status === 400) {
+                        $scope.saveFull(params, onSaved);
+                    } else {
+                        $scope.error = {};
+                        console.log('Something went wrong when updating the process model:' + JSON.stringify(data));
+                        $scope.status.loading = false;
+                    }
+                });
+        } else {
+            $scope.saveFull(params, onSaved);
+        }
+    };
+
+    $scope.saveFull = function (params, onSaved) {
         // Update
         $http({    method: 'PUT',
             data: params,
@@ -391,33 +504,7 @@ var SaveModelCtrl = [ '$rootScope', '$scope', '$http', '$route', '$location',
             url: KISBPM.URL.putModel(modelMetaData.modelId)})
 
             .success(function (data, status, headers, config) {
-                $scope.editor.handleEvents({
-                    type: ORYX.CONFIG.EVENT_SAVED
-                });
-                $scope.modelData.name = $scope.saveDialog.name;
-                $scope.modelData.lastUpdated = data.lastUpdated;
-                
-                $scope.status.loading = false;
-                $scope.$hide();
-
-                // Fire event to all who is listening
-                var saveEvent = {
-                    type: KISBPM.eventBus.EVENT_TYPE_MODEL_SAVED,
-                    model: params,
-                    modelId: modelMetaData.modelId,
-		            eventType: 'update-model'
-                };
-                KISBPM.eventBus.dispatch(KISBPM.eventBus.EVENT_TYPE_MODEL_SAVED, saveEvent);
-
-                // Reset state
-                $scope.error = undefined;
-                $scope.status.loading = false;
-
-                // Execute any callback
-                if (successCallback) {
-                    successCallback();
-                }
-
+                onSaved(data);
             })
             .error(function (data, status, headers, config) {
                 $scope.error = {};
@@ -0,0 +1,164 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.pojo.TaskDelta;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskEventBroadcasterTest {
+
+    private static final int APPROVERS_PER_GROUP = 100;
+
+    /**
+     * 轮询方式下每个审批人每次轮询都要查询一次任务；推送方式下每个连接只在建立时查询一次基线，
+     * 之后只有相关的审批人收到任务变化。两种方式的JDBC语句数见{@link TaskEventQueryCountTest}
+     */
+    @Test
+    void subscribersReceiveDeltasInsteadOfPolling() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        TaskEventBroadcaster broadcaster = new TaskEventBroadcaster(executor, 1000, 3, 100, 0);
+        Map<String, CapturingEmitter> emitters = new LinkedHashMap<>();
+        for (int i = 0; i < APPROVERS_PER_GROUP; i++) {
+            subscribe(broadcaster, emitters, "leader" + i, "groupLeader");
+            subscribe(broadcaster, emitters, "manager" + i, "departmentManager");
+        }
+        subscribe(broadcaster, emitters, "bob", "staff");
+
+        // 一次出差申请：填表、组长认领并审批、进入经理审批
+        broadcaster.publish(delta(TaskDelta.CREATED, "fillForm", "bob"), Set.of("bob"), Set.of());
+        broadcaster.publish(delta(TaskDelta.COMPLETED, "fillForm", "bob"), Set.of("bob"), Set.of());
+        broadcaster.publish(delta(TaskDelta.CREATED, "groupLeaderApproval", null), Set.of(), Set.of("groupLeader"));
+        broadcaster.publish(delta(TaskDelta.ASSIGNED, "groupLeaderApproval", "leader0"), Set.of("leader0"), Set.of("groupLeader"));
+        broadcaster.publish(delta(TaskDelta.COMPLETED, "groupLeaderApproval", "leader0"), Set.of("leader0"), Set.of("groupLeader"));
+        broadcaster.publish(delta(TaskDelta.CREATED, "managerApproval", null), Set.of(), Set.of("departmentManager"));
+        // 每个连接一个基线事件，之后只有任务变化
+        long connected = emitters.size();
+        long deltas = 2 + 3L * APPROVERS_PER_GROUP + APPROVERS_PER_GROUP;
+        // 排空线程可能在队列排空后再次提交，全部发送完再关闭线程池
+        awaitUntil(() -> (long) broadcaster.stats().get("sentCount") >= connected + deltas);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(List.of("connected", TaskDelta.CREATED, TaskDelta.COMPLETED), emitters.get("bob").names());
+        for (int i = 0; i < APPROVERS_PER_GROUP; i++) {
+            assertEquals(List.of("connected", TaskDelta.CREATED, TaskDelta.ASSIGNED, TaskDelta.COMPLETED),
+                    emitters.get("leader" + i).names());
+            assertEquals(List.of("connected", TaskDelta.CREATED), emitters.get("manager" + i).names());
+        }
+        assertEquals(connected + deltas, broadcaster.stats().get("sentCount"));
+    }
+
+    @Test
+    void connectionLimitsAreEnforced() {
+        TaskEventBroadcaster broadcaster = new TaskEventBroadcaster(Executors.newSingleThreadExecutor(), 5, 3, 100, 0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(broadcaster.subscribe("leader0", List.of("groupLeader"), new CapturingEmitter()).isPresent());
+        }
+        assertTrue(broadcaster.subscribe("leader0", List.of("groupLeader"), new CapturingEmitter()).isEmpty());
+        assertTrue(broadcaster.subscribe("leader1", List.of("groupLeader"), new CapturingEmitter()).isPresent());
+        assertTrue(broadcaster.subscribe("leader2", List.of("groupLeader"), new CapturingEmitter()).isPresent());
+        assertTrue(broadcaster.subscribe("leader3", List.of("groupLeader"), new CapturingEmitter()).isEmpty());
+        assertEquals(5, broadcaster.stats().get("connections"));
+        assertEquals(2L, broadcaster.stats().get("rejectedCount"));
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void slowSubscriberIsClosedWithoutBlockingOthers() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        TaskEventBroadcaster broadcaster = new TaskEventBroadcaster(executor, 100, 3, 2, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CapturingEmitter slow = new CapturingEmitter(release);
+        CapturingEmitter fast = new CapturingEmitter();
+        broadcaster.subscribe("leader0", List.of("groupLeader"), slow);
+        broadcaster.subscribe("leader1", List.of("groupLeader"), fast);
+        // 慢客户端卡在发送connected事件上
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            broadcaster.publish(delta(TaskDelta.CREATED, "task" + i, null), Set.of(), Set.of("groupLeader"));
+        }
+        assertTrue(slow.completed);
+        assertEquals(1L, broadcaster.stats().get("overflowCount"));
+        assertEquals(1, broadcaster.stats().get("connections"));
+
+        release.countDown();
+        awaitUntil(() -> fast.names().size() >= 6);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(6, fast.names().size());
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待推送超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void subscribe(TaskEventBroadcaster broadcaster, Map<String, CapturingEmitter> emitters,
+                                  String username, String group) {
+        CapturingEmitter emitter = new CapturingEmitter();
+        assertTrue(broadcaster.subscribe(username, List.of(group), emitter).isPresent());
+        emitters.put(username, emitter);
+    }
+
+    private static TaskDelta delta(String type, String taskId, String assignee) {
+        return new TaskDelta(type, taskId, taskId, "processInstance", "businessTrip:1:1", assignee, new Date());
+    }
+
+    /**
+     * 记录发送的事件名，release不为空时第一次发送阻塞到放行，模拟网络拥塞的客户端
+     */
+    private static class CapturingEmitter extends SseEmitter {
+
+        private final List<String> names = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch release;
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private volatile boolean completed;
+
+        CapturingEmitter() {
+            this(null);
+        }
+
+        CapturingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                String text = data.getData().toString();
+                int start = text.indexOf("event:");
+                if (start >= 0) {
+                    names.add(text.substring(start + "event:".length(), text.indexOf('\n', start)));
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        List<String> names() {
+            return List.copyOf(names);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.pojo.TaskDelta;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.TaskService;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.task.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+/**
+ * 以h2 profile启动引擎，由真实的任务事件驱动TaskEventPublisher，校验推送内容、接收人和事务内的合并
+ */
+@SpringBootTest(properties = "activiti-demo.metrics.gauge-refresh-millis=3600000")
+@ActiveProfiles("h2")
+class TaskEventPublisherTest {
+
+    private static final String PROCESS_RESOURCE = "task-events.bpmn20.xml";
+    private static final String PROCESS_KEY = "taskEventsTest";
+
+    @MockBean
+    private TaskEventBroadcaster broadcaster;
+
+    @Autowired
+    private RepositoryService repositoryService;
+
+    @Autowired
+    private RuntimeService runtimeService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private String deploymentId;
+
+    @BeforeEach
+    void deploy() {
+        Deployment deployment = repositoryService.createDeployment()
+                .addClasspathResource(PROCESS_RESOURCE)
+                .deploy();
+        deploymentId = deployment.getId();
+    }
+
+    @AfterEach
+    void undeploy() {
+        repositoryService.deleteDeployment(deploymentId, true);
+    }
+
+    /**
+     * 办理人任务创建时的分配事件并入创建事件，完成时随之触发的删除事件不再推送，
+     * 候选组任务推送给用户组，认领和转办推送给新旧办理人
+     */
+    @Test
+    void engineEventsArePublishedAsMergedDeltas() {
+        String processInstanceId = runtimeService.startProcessInstanceByKey(PROCESS_KEY, Map.of("applicant", "bob")).getId();
+        List<Published> started = published();
+        assertEquals(1, started.size());
+        assertEquals(TaskDelta.CREATED, started.get(0).delta().type());
+        assertEquals("填写审批单", started.get(0).delta().name());
+        assertEquals("bob", started.get(0).delta().assignee());
+        assertEquals(processInstanceId, started.get(0).delta().processInstanceId());
+        assertEquals(Set.of("bob"), started.get(0).users());
+        assertEquals(Set.of(), started.get(0).groups());
+
+        taskService.complete(task(processInstanceId).getId());
+        List<Published> completed = published();
+        assertEquals(List.of(TaskDelta.COMPLETED, TaskDelta.CREATED),
+                completed.stream().map(p -> p.delta().type()).toList());
+        assertEquals(Set.of("bob"), completed.get(0).users());
+        assertEquals("组长审批", completed.get(1).delta().name());
+        assertEquals(Set.of(), completed.get(1).users());
+        assertEquals(Set.of("groupLeader"), completed.get(1).groups());
+
+        String approvalId = task(processInstanceId).getId();
+        taskService.claim(approvalId, "leader0");
+        List<Published> claimed = published();
+        assertEquals(1, claimed.size());
+        assertEquals(TaskDelta.ASSIGNED, claimed.get(0).delta().type());
+        assertEquals(Set.of("leader0"), claimed.get(0).users());
+        assertEquals(Set.of("groupLeader"), claimed.get(0).groups());
+
+        taskService.setAssignee(approvalId, "leader1");
+        List<Published> transferred = published();
+        assertEquals(1, transferred.size());
+        assertEquals(Set.of("leader0", "leader1"), transferred.get(0).users());
+    }
+
+    /**
+     * 事务提交后才推送，回滚时不推送
+     */
+    @Test
+    void deltasArePublishedAfterCommitOnly() {
+        String processInstanceId = transactionTemplate.execute(status -> {
+            String id = runtimeService.startProcessInstanceByKey(PROCESS_KEY, Map.of("applicant", "bob")).getId();
+            verify(broadcaster, never()).publish(any(), anySet(), anySet());
+            return id;
+        });
+        assertEquals(1, published().size());
+
+        String taskId = task(processInstanceId).getId();
+        transactionTemplate.executeWithoutResult(status -> {
+            taskService.complete(taskId);
+            status.setRollbackOnly();
+        });
+        verify(broadcaster, never()).publish(any(), anySet(), anySet());
+    }
+
+    private Task task(String processInstanceId) {
+        return taskService.createTaskQuery().processInstanceId(processInstanceId).singleResult();
+    }
+
+    /**
+     * 上次调用之后推送的变化，按推送顺序
+     */
+    @SuppressWarnings("unchecked")
+    private List<Published> published() {
+        ArgumentCaptor<TaskDelta> deltas = ArgumentCaptor.forClass(TaskDelta.class);
+        ArgumentCaptor<Set<String>> users = ArgumentCaptor.forClass(Set.class);
+        ArgumentCaptor<Set<String>> groups = ArgumentCaptor.forClass(Set.class);
+        verify(broadcaster, atLeast(0)).publish(deltas.capture(), users.capture(), groups.capture());
+        List<Published> published = new ArrayList<>();
+        for (int i = 0; i < deltas.getAllValues().size(); i++) {
+            published.add(new Published(deltas.getAllValues().get(i), users.getAllValues().get(i), groups.getAllValues().get(i)));
+        }
+        clearInvocations(broadcaster);
+        return published;
+    }
+
+    private record Published(TaskDelta delta, Set<String> users, Set<String> groups) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.yls.activiti7demo.service;
+
+import com.yls.activiti7demo.util.QueryStatistics;
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.TaskService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以h2和loadtest profile启动，用{@link QueryStatistics}统计JDBC语句数，比较推送和轮询的查询代价
+ */
+@SpringBootTest(properties = "activiti-demo.metrics.gauge-refresh-millis=3600000")
+@ActiveProfiles({"h2", "loadtest"})
+class TaskEventQueryCountTest {
+
+    private static final String PROCESS_RESOURCE = "task-events.bpmn20.xml";
+    private static final String PROCESS_KEY = "taskEventsTest";
+    private static final int APPROVERS = 20;
+
+    @Autowired
+    private RepositoryService repositoryService;
+
+    @Autowired
+    private RuntimeService runtimeService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskEventBroadcaster broadcaster;
+
+    @Autowired
+    private TaskInboxService taskInboxService;
+
+    private String deploymentId;
+
+    @BeforeEach
+    void deploy() {
+        deploymentId = repositoryService.createDeployment()
+                .addClasspathResource(PROCESS_RESOURCE)
+                .deploy()
+                .getId();
+        QueryStatistics.reset();
+    }
+
+    @AfterEach
+    void undeploy() {
+        repositoryService.deleteDeployment(deploymentId, true);
+    }
+
+    /**
+     * 推送的接收人在引擎命令内随任务事件确定，APPROVERS个订阅者不增加流程操作的语句数；
+     * 轮询时每个审批人每一轮都要查询一次待办
+     */
+    @Test
+    void subscribersAddNoQueriesWhilePollersQueryEveryRound() {
+        // 预热流程定义缓存和ID块，之后两次审批的语句数可以直接比较
+        approve();
+        long withoutSubscribers = statements("approve-without-subscribers", this::approve);
+
+        List<SseEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < APPROVERS; i++) {
+            emitters.add(broadcaster.subscribe("leader" + i, List.of("groupLeader")).orElseThrow());
+        }
+        long publishedBefore = (long) broadcaster.stats().get("publishedCount");
+        long withSubscribers = statements("approve-with-subscribers", this::approve);
+        long published = (long) broadcaster.stats().get("publishedCount") - publishedBefore;
+
+        long polling = statements("poll", () -> {
+            for (int i = 0; i < APPROVERS; i++) {
+                taskInboxService.inbox("leader" + i, 0, 10);
+            }
+        });
+        emitters.forEach(SseEmitter::complete);
+
+        assertTrue(published > 0);
+        assertEquals(withoutSubscribers, withSubscribers);
+        assertTrue(polling >= APPROVERS, "每个审批人每轮轮询至少一条语句，实际:" + polling);
+    }
+
+    /**
+     * 发起流程、完成填写审批单、组长认领并审批
+     */
+    private void approve() {
+        String processInstanceId = runtimeService.startProcessInstanceByKey(PROCESS_KEY, Map.of("applicant", "bob")).getId();
+        taskService.complete(taskService.createTaskQuery().processInstanceId(processInstanceId).singleResult().getId());
+        String approvalId = taskService.createTaskQuery().processInstanceId(processInstanceId).singleResult().getId();
+        taskService.claim(approvalId, "leader0");
+        taskService.complete(approvalId);
+    }
+
+    private long statements(String operation, Runnable action) {
+        QueryStatistics.begin();
+        try {
+            action.run();
+        } finally {
+            QueryStatistics.end(operation);
+        }
+        return (long) QueryStatistics.snapshot().get(operation).get("statements");
+    }
+}
@@ -0,0 +1,115 @@
+package com.yls.activiti7demo.util;
+
+import org.activiti.engine.impl.identity.Authentication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityUtilTest {
+
+    private static final int USER_COUNT = 20;
+
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    private final SecurityUtil securityUtil = new SecurityUtil(countingUserDetailsService(), 300);
+
+    @AfterEach
+    void clear() {
+        SecurityContextHolder.clearContext();
+        Authentication.setAuthenticatedUserId(null);
+    }
+
+    @Test
+    void runAsClearsIdentityWhenNoneBefore() {
+        try (SecurityUtil.RunAs ignored = securityUtil.runAs("user0")) {
+            assertEquals("user0", SecurityContextHolder.getContext().getAuthentication().getName());
+            assertEquals("user0", Authentication.getAuthenticatedUserId());
+        }
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNull(Authentication.getAuthenticatedUserId());
+    }
+
+    @Test
+    void nestedRunAsRestoresOuterIdentity() {
+        try (SecurityUtil.RunAs outer = securityUtil.runAs("user0")) {
+            try (SecurityUtil.RunAs inner = securityUtil.runAs("user1")) {
+                assertEquals("user1", SecurityContextHolder.getContext().getAuthentication().getName());
+                assertEquals("user1", Authentication.getAuthenticatedUserId());
+            }
+            assertEquals("user0", SecurityContextHolder.getContext().getAuthentication().getName());
+            assertEquals("user0", Authentication.getAuthenticatedUserId());
+        }
+    }
+
+    @Test
+    void principalsAreCached() {
+        for (int i = 0; i < 10; i++) {
+            try (SecurityUtil.RunAs ignored = securityUtil.runAs("user0")) {
+                assertEquals("user0", Authentication.getAuthenticatedUserId());
+            }
+        }
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void noIdentityBleedUnderParallelRequests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<String>> requests = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            String username = "user" + (i % USER_COUNT);
+            requests.add(() -> {
+                // 模拟线程池复用：进入前线程上不应残留上一个请求的身份
+                if (SecurityContextHolder.getContext().getAuthentication() != null
+                        || Authentication.getAuthenticatedUserId() != null) {
+                    return "leaked identity before " + username;
+                }
+                try (SecurityUtil.RunAs ignored = securityUtil.runAs(username)) {
+                    Thread.yield();
+                    String securityName = SecurityContextHolder.getContext().getAuthentication().getName();
+                    String activitiUserId = Authentication.getAuthenticatedUserId();
+                    if (!username.equals(securityName) || !username.equals(activitiUserId)) {
+                        return username + " saw " + securityName + "/" + activitiUserId;
+                    }
+                }
+                return null;
+            });
+        }
+        List<String> failures = new ArrayList<>();
+        try {
+            for (Future<String> future : executor.invokeAll(requests)) {
+                String failure = future.get();
+                if (failure != null) {
+                    failures.add(failure);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(USER_COUNT, loadCount.get());
+    }
+
+    private UserDetailsService countingUserDetailsService() {
+        InMemoryUserDetailsManager manager = new InMemoryUserDetailsManager();
+        for (int i = 0; i < USER_COUNT; i++) {
+            manager.createUser(new User("user" + i, "password",
+                    Collections.singletonList(new SimpleGrantedAuthority("ROLE_ACTIVITI_USER"))));
+        }
+        return username -> {
+            loadCount.incrementAndGet();
+            return manager.loadUserByUsername(username);
+        };
+    }
+}